@@ -0,0 +1,40 @@
+#!/bin/sh
+# Measures the ambient wake-up: the time from onTimeTick to the ambient frame drawn, as recorded
+# by the debug build's frame stats and logged under the SimpletonWatchFace tag when the face is
+# hidden.
+#
+# Usage: app/measure-ambient-wake.sh [minutes]
+#
+# Install the debug build first, ./gradlew :app:installDebug for the frames rendered ahead of
+# onTimeTick, or ./gradlew :app:installDebug -PambientPrerender=false for the frames drawn when
+# the tick arrives. The app is force-stopped so that the stats start empty, the face is selected
+# through the Wear OS debug surface, put in ambient mode for the given number of minutes, one
+# tick each, then woken and covered by the settings. Prints the frame stats line, whose
+# "ambient wake p50=... p95=... ms (N frames)" part is the measurement.
+
+MINUTES=${1:-10}
+FACE=com.cybermats.simpleton/com.cybermats.cleaner.SimpletonWatchFace
+PACKAGE=${FACE%%/*}
+TAG=SimpletonWatchFace
+
+adb shell am force-stop "$PACKAGE"
+adb shell am broadcast -a com.google.android.wearable.app.DEBUG_SURFACE \
+    --es operation set-watchface --es watchFaceId "$FACE" > /dev/null
+echo "Select the face if it doesn't appear" >&2
+sleep 5
+adb logcat -c
+
+adb shell input keyevent KEYCODE_SLEEP
+echo "Ambient for $MINUTES minutes" >&2
+sleep $((MINUTES * 60 + 5))
+adb shell input keyevent KEYCODE_WAKEUP
+sleep 2
+adb shell am start -a android.settings.SETTINGS > /dev/null
+sleep 2
+
+stats=$(adb logcat -d -s "$TAG:D" | sed -n 's/.*Frame stats: //p' | tail -n 1)
+if [ -z "$stats" ]; then
+    echo "No frame stats logged, is the debug build installed?" >&2
+    exit 1
+fi
+echo "$stats"
@@ -0,0 +1,60 @@
+#!/bin/sh
+# Measures the face's start in a new process: the time from onCreateEngine to the first frame, as
+# logged by SimpletonWatchFace under the SimpletonStartup tag in every build.
+#
+# Usage: app/measure-first-frame.sh [runs] [cold]
+#
+# Install the variant to measure first, e.g. ./gradlew :app:installDebug or
+# ./gradlew :app:installProfile for the shrunk release build. Each run force-stops the app, so
+# that the engine is created in a new process, and selects the face again through the Wear OS
+# debug surface. Where that isn't available, select the face by hand when asked. Prints every
+# run and the median, in milliseconds.
+#
+# By default the dial layer and hand sprites the previous run persisted are loaded from the
+# cache directory, a warm start; the first run stores them. With "cold", each run deletes them
+# first, so that the engine rasterizes them again. That needs run-as, so a debuggable build such
+# as the debug one.
+
+RUNS=${1:-10}
+COLD=$2
+FACE=com.cybermats.simpleton/com.cybermats.cleaner.SimpletonWatchFace
+PACKAGE=${FACE%%/*}
+TAG=SimpletonStartup
+# How long to wait for the first frame of a run, in half seconds.
+WAIT=60
+
+RESULTS=$(mktemp)
+trap 'rm -f "$RESULTS"' EXIT
+
+run=1
+while [ "$run" -le "$RUNS" ]; do
+    adb shell am force-stop "$PACKAGE"
+    if [ "$COLD" = cold ]; then
+        adb shell run-as "$PACKAGE" sh -c "'rm -rf cache/face-assets-*'" || exit 1
+    fi
+    adb logcat -c
+    adb shell am broadcast -a com.google.android.wearable.app.DEBUG_SURFACE \
+        --es operation set-watchface --es watchFaceId "$FACE" > /dev/null
+    echo "Run $run: waiting for the first frame, select the face if it doesn't appear" >&2
+
+    ms=
+    tries=0
+    while [ -z "$ms" ] && [ "$tries" -lt "$WAIT" ]; do
+        sleep 0.5
+        ms=$(adb logcat -d -s "$TAG:I" \
+            | sed -n 's/.*First frame \([0-9.]*\) ms after onCreateEngine.*/\1/p' | head -n 1)
+        tries=$((tries + 1))
+    done
+    if [ -z "$ms" ]; then
+        echo "Run $run: no first frame logged" >&2
+        exit 1
+    fi
+    echo "Run $run: $ms ms"
+    echo "$ms" >> "$RESULTS"
+    run=$((run + 1))
+done
+
+sort -n "$RESULTS" | awk '{ v[NR] = $1 } END {
+    m = NR % 2 ? v[(NR + 1) / 2] : (v[NR / 2] + v[NR / 2 + 1]) / 2
+    printf "Median of %d runs: %.1f ms (min %.1f, max %.1f)\n", NR, m, v[1], v[NR]
+}'
@@ -19,3 +19,6 @@
 # If you keep the line number information, uncomment this to
 # hide the original source file name.
 #-renamesourcefileattribute SourceFile
+
+# The wearable classes are provided by the watch, see compileOnly in build.gradle.
+-dontwarn com.google.android.wearable.**
@@ -0,0 +1,174 @@
+package com.cybermats.cleaner;
+
+import android.graphics.Bitmap;
+import android.util.Log;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+/**
+ * Persists pre-rendered face assets, the dial layers and hand sprites, in the app's cache
+ * directory. A new engine, e.g. after the process was killed or for the picker preview, can then
+ * load them instead of rasterizing them again with their shadow blurs before its first frame.
+ * <p>
+ * Assets are stored as raw pixels, in the bitmap's own config, behind a small header. They are
+ * written and read back through a memory map straight from and into the bitmap, without any
+ * decoding or a copy of the pixels on the heap. Entries live in
+ * a directory named after the asset version, which the engine derives from everything that
+ * changes the rendering; directories for other versions are deleted, so changing a geometry
+ * constant or a colour invalidates the cache without anyone having to remember to.
+ */
+class AssetDiskCache {
+    private static final String TAG = "AssetDiskCache";
+    private static final String DIRECTORY_PREFIX = "face-assets-";
+    private static final int MAGIC = 0x53494d50;
+    /* Magic, width, height and config. */
+    private static final int HEADER_BYTES = 4 * 4;
+    /* The configs assets can be stored in, by their index in the header. */
+    private static final Bitmap.Config[] CONFIGS = {
+            Bitmap.Config.ARGB_8888, Bitmap.Config.RGB_565, Bitmap.Config.ALPHA_8};
+
+    /* Writes are done off the render thread, one at a time, shared by all engines. */
+    private static final Executor WRITER = Executors.newSingleThreadExecutor();
+
+    private final File mDirectory;
+
+    AssetDiskCache(final File cacheDir, int version) {
+        final String name = DIRECTORY_PREFIX + Integer.toHexString(version);
+        mDirectory = new File(cacheDir, name);
+        WRITER.execute(new Runnable() {
+            @Override
+            public void run() {
+                deleteOtherVersions(cacheDir, name);
+            }
+        });
+    }
+
+    /**
+     * Loads an asset stored with {@link #store}, if its memory can be reserved for {@code key} in
+     * {@code budget}.
+     *
+     * @return the bitmap holding the asset, or null if it isn't cached or doesn't fit.
+     */
+    Bitmap load(String key, BitmapBudget budget) {
+        final File file = new File(mDirectory, key);
+        if (!file.isFile()) {
+            return null;
+        }
+        RandomAccessFile input = null;
+        try {
+            input = new RandomAccessFile(file, "r");
+            final FileChannel channel = input.getChannel();
+            final MappedByteBuffer buffer =
+                    channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.remaining() < HEADER_BYTES || buffer.getInt() != MAGIC) {
+                return null;
+            }
+            final int width = buffer.getInt();
+            final int height = buffer.getInt();
+            final int configIndex = buffer.getInt();
+            if (width <= 0 || height <= 0 || configIndex < 0 || configIndex >= CONFIGS.length) {
+                return null;
+            }
+            final Bitmap.Config config = CONFIGS[configIndex];
+            final long bytes = BitmapBudget.byteCount(width, height, config);
+            if (buffer.remaining() < bytes || !budget.reserve(key, bytes)) {
+                return null;
+            }
+
+            final Bitmap bitmap = Bitmap.createBitmap(width, height, config);
+            bitmap.copyPixelsFromBuffer(buffer);
+            return bitmap;
+        } catch (IOException | RuntimeException e) {
+            Log.w(TAG, "Could not load " + key, e);
+            budget.release(key);
+            return null;
+        } finally {
+            closeQuietly(input);
+        }
+    }
+
+    /**
+     * Stores an asset, in the background. The bitmap is read from when it is written, so it must
+     * not be modified afterwards, like every shared asset.
+     */
+    void store(final String key, final Bitmap bitmap) {
+        final int configIndex = Arrays.asList(CONFIGS).indexOf(bitmap.getConfig());
+        if (configIndex < 0) {
+            return;
+        }
+        WRITER.execute(new Runnable() {
+            @Override
+            public void run() {
+                write(key, bitmap, configIndex);
+            }
+        });
+    }
+
+    private void write(String key, Bitmap bitmap, int configIndex) {
+        if (!mDirectory.isDirectory() && !mDirectory.mkdirs()) {
+            return;
+        }
+        /* Write to a temporary file first, so that a reader never sees a partial asset. */
+        final File temporary = new File(mDirectory, key + ".tmp");
+        RandomAccessFile output = null;
+        try {
+            output = new RandomAccessFile(temporary, "rw");
+            final long length = HEADER_BYTES + bitmap.getByteCount();
+            output.setLength(length);
+            final MappedByteBuffer buffer =
+                    output.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, length);
+            buffer.putInt(MAGIC).putInt(bitmap.getWidth()).putInt(bitmap.getHeight())
+                    .putInt(configIndex);
+            bitmap.copyPixelsToBuffer(buffer);
+            output.close();
+            output = null;
+            if (!temporary.renameTo(new File(mDirectory, key))) {
+                temporary.delete();
+            }
+        } catch (IOException | RuntimeException e) {
+            Log.w(TAG, "Could not store " + key, e);
+            temporary.delete();
+        } finally {
+            closeQuietly(output);
+        }
+    }
+
+    private static void deleteOtherVersions(File cacheDir, String current) {
+        final File[] directories = cacheDir.listFiles();
+        if (directories == null) {
+            return;
+        }
+        for (File directory : directories) {
+            final String name = directory.getName();
+            if (!name.startsWith(DIRECTORY_PREFIX) || name.equals(current)) {
+                continue;
+            }
+            final File[] files = directory.listFiles();
+            if (files != null) {
+                for (File file : files) {
+                    file.delete();
+                }
+            }
+            directory.delete();
+        }
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable == null) {
+            return;
+        }
+        try {
+            closeable.close();
+        } catch (IOException e) {
+            /* Nothing useful to do. */
+        }
+    }
+}
@@ -0,0 +1,224 @@
+package com.cybermats.cleaner;
+
+import android.annotation.TargetApi;
+import android.graphics.Bitmap;
+import android.os.Build;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Accounts for the bitmaps kept to draw frames faster against one memory budget for the whole
+ * process: each engine's dial copy, date atlases, complications and pre-rendered ambient frame,
+ * and once for all engines the dial layers and hand sprites in {@link SharedAssets}, in use or
+ * not. Every one of those caches can be drawn without, so a cache that doesn't fit is drawn
+ * directly instead: slower, but without risking the process on a watch with a small heap.
+ * <p>
+ * Each instance is an account that holds bitmaps under roles, and a role only gets its memory
+ * while the process' total stays within the budget. When it wouldn't, the unused shared assets
+ * are dropped first, see {@link Reclaimer}. Bitmaps the engine draws into itself are handed out
+ * by {@link #obtain}, which reuses the role's previous bitmap, e.g. after the surface changed,
+ * rather than allocating another one.
+ * <p>
+ * The totals are shared by all threads. An account is only used by one thread at a time: an
+ * engine's on its render thread, the shared assets' with their lock held, and the one an asset
+ * is loaded from disk under by the thread loading it.
+ */
+final class BitmapBudget {
+
+    /**
+     * Gives memory back when a reservation doesn't fit, i.e. the unused shared assets.
+     */
+    interface Reclaimer {
+        /**
+         * Drops caches nobody uses, until at least {@code bytes} are released or none are left.
+         * Called without the budget's lock held.
+         */
+        void reclaim(long bytes);
+    }
+
+    private static final Object sLock = new Object();
+    private static long sBudgetBytes = Long.MAX_VALUE;
+    private static long sHeldBytes;
+    private static Reclaimer sReclaimer;
+
+    private final Map<String, Long> mHeld = new HashMap<>();
+
+    static void setBudgetBytes(long budgetBytes) {
+        synchronized (sLock) {
+            sBudgetBytes = budgetBytes;
+        }
+    }
+
+    static long getBudgetBytes() {
+        synchronized (sLock) {
+            return sBudgetBytes;
+        }
+    }
+
+    /**
+     * Returns the bytes held by all accounts in the process.
+     */
+    static long getHeldBytes() {
+        synchronized (sLock) {
+            return sHeldBytes;
+        }
+    }
+
+    static void setReclaimer(Reclaimer reclaimer) {
+        synchronized (sLock) {
+            sReclaimer = reclaimer;
+        }
+    }
+
+    /**
+     * Returns whether {@code bytes} more fit in the budget, reclaiming unused caches to make
+     * room if needed. Nothing is reserved, so another thread may take the room first.
+     */
+    static boolean fits(long bytes) {
+        final long missingBytes;
+        final Reclaimer reclaimer;
+        synchronized (sLock) {
+            missingBytes = sHeldBytes + bytes - sBudgetBytes;
+            if (missingBytes <= 0) {
+                return true;
+            }
+            reclaimer = sReclaimer;
+        }
+        if (reclaimer == null) {
+            return false;
+        }
+        reclaimer.reclaim(missingBytes);
+        synchronized (sLock) {
+            return sHeldBytes + bytes <= sBudgetBytes;
+        }
+    }
+
+    /**
+     * Reserves {@code bytes} for {@code role}, in place of what it held.
+     *
+     * @return false if that doesn't fit in the budget, in which case the role holds nothing.
+     */
+    boolean reserve(String role, long bytes) {
+        return reserve(role, bytes, false);
+    }
+
+    /**
+     * Accounts for {@code bytes} {@code role} holds whatever the budget, e.g. for a bitmap that
+     * already exists. That leaves less of the budget to the caches.
+     */
+    void reserveRequired(String role, long bytes) {
+        reserve(role, bytes, true);
+    }
+
+    private boolean reserve(String role, long bytes, boolean required) {
+        release(role);
+        if (!required && !fits(bytes)) {
+            return false;
+        }
+        synchronized (sLock) {
+            if (!required && sHeldBytes + bytes > sBudgetBytes) {
+                return false;
+            }
+            sHeldBytes += bytes;
+        }
+        mHeld.put(role, bytes);
+        return true;
+    }
+
+    void release(String role) {
+        final Long bytes = mHeld.remove(role);
+        if (bytes != null) {
+            synchronized (sLock) {
+                sHeldBytes -= bytes;
+            }
+        }
+    }
+
+    /**
+     * Releases every role, e.g. when the engine is destroyed.
+     */
+    void releaseAll() {
+        long bytes = 0;
+        for (long held : mHeld.values()) {
+            bytes += held;
+        }
+        mHeld.clear();
+        synchronized (sLock) {
+            sHeldBytes -= bytes;
+        }
+    }
+
+    /**
+     * Returns a bitmap for {@code role} to draw into. The role's {@code current} bitmap is reused
+     * if it has the right size and config, or from KitKat if its memory is large enough. The
+     * contents are undefined, the caller must draw every pixel or erase the bitmap first.
+     *
+     * @return the bitmap, or null if it doesn't fit in the budget, in which case the role holds
+     * nothing and {@code current} should be dropped.
+     */
+    Bitmap obtain(String role, Bitmap current, int width, int height, Bitmap.Config config) {
+        return obtain(role, current, width, height, config, false);
+    }
+
+    /**
+     * Like {@link #obtain}, for a bitmap the engine can't draw without. It is always returned, and
+     * leaves that much less of the budget to the caches.
+     */
+    Bitmap obtainRequired(String role, Bitmap current, int width, int height,
+                          Bitmap.Config config) {
+        return obtain(role, current, width, height, config, true);
+    }
+
+    private Bitmap obtain(String role, Bitmap current, int width, int height,
+                          Bitmap.Config config, boolean required) {
+        final long bytes = byteCount(width, height, config);
+        release(role);
+        if (current != null && current.isMutable() && current.getWidth() == width
+                && current.getHeight() == height && current.getConfig() == config) {
+            return reserve(role, bytes, required) ? current : null;
+        }
+        if (current != null && current.isMutable()
+                && Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
+            final long allocated = allocationByteCount(current);
+            if (allocated >= bytes) {
+                if (!reserve(role, allocated, required)) {
+                    return null;
+                }
+                reconfigure(current, width, height, config);
+                return current;
+            }
+        }
+        return reserve(role, bytes, required)
+                ? Bitmap.createBitmap(width, height, config) : null;
+    }
+
+    /**
+     * Returns the bytes a bitmap of the given size and config needs.
+     */
+    static long byteCount(int width, int height, Bitmap.Config config) {
+        return (long) width * height * bytesPerPixel(config);
+    }
+
+    private static int bytesPerPixel(Bitmap.Config config) {
+        switch (config) {
+            case ALPHA_8:
+                return 1;
+            case RGB_565:
+            case ARGB_4444:
+                return 2;
+            default:
+                return 4;
+        }
+    }
+
+    @TargetApi(Build.VERSION_CODES.KITKAT)
+    private static long allocationByteCount(Bitmap bitmap) {
+        return bitmap.getAllocationByteCount();
+    }
+
+    @TargetApi(Build.VERSION_CODES.KITKAT)
+    private static void reconfigure(Bitmap bitmap, int width, int height, Bitmap.Config config) {
+        bitmap.reconfigure(width, height, config);
+    }
+}
@@ -0,0 +1,172 @@
+package com.cybermats.cleaner;
+
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Path;
+import android.graphics.Rect;
+
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Draws on an {@link Canvas}. The canvas is swapped with {@link #setCanvas} so that one target
+ * can be used for every frame, and paints and paths are translated once and cached, so drawing
+ * doesn't allocate.
+ * <p>
+ * The paints and paths are shared by engines drawing on other threads, so the translations are
+ * kept by the target rather than on them. They are looked up by identity, as neither class
+ * overrides equals, and dropped along with the paint or path.
+ */
+class CanvasRenderTarget implements RenderTarget {
+    private final Rect mTextBounds = new Rect();
+    private final Map<RenderPaint, Translated<Paint>> mPaints = new WeakHashMap<>();
+    private final Map<FacePath, Translated<Path>> mPaths = new WeakHashMap<>();
+    private Canvas mCanvas;
+
+    CanvasRenderTarget() {
+    }
+
+    CanvasRenderTarget(Canvas canvas) {
+        mCanvas = canvas;
+    }
+
+    /**
+     * Sets the canvas to draw on.
+     *
+     * @return this target.
+     */
+    CanvasRenderTarget setCanvas(Canvas canvas) {
+        mCanvas = canvas;
+        return this;
+    }
+
+    @Override
+    public void save() {
+        mCanvas.save();
+    }
+
+    @Override
+    public void restore() {
+        mCanvas.restore();
+    }
+
+    @Override
+    public void translate(float dx, float dy) {
+        mCanvas.translate(dx, dy);
+    }
+
+    @Override
+    public void rotate(float degrees, float pivotX, float pivotY) {
+        mCanvas.rotate(degrees, pivotX, pivotY);
+    }
+
+    @Override
+    public void drawColor(int color) {
+        mCanvas.drawColor(color);
+    }
+
+    @Override
+    public void drawRect(float left, float top, float right, float bottom, RenderPaint paint) {
+        mCanvas.drawRect(left, top, right, bottom, toPaint(paint));
+    }
+
+    @Override
+    public void drawLines(float[] points, RenderPaint paint) {
+        mCanvas.drawLines(points, toPaint(paint));
+    }
+
+    @Override
+    public void drawCircle(float centerX, float centerY, float radius, RenderPaint paint) {
+        mCanvas.drawCircle(centerX, centerY, radius, toPaint(paint));
+    }
+
+    @Override
+    public void drawPath(FacePath path, RenderPaint paint) {
+        mCanvas.drawPath(toPath(path), toPaint(paint));
+    }
+
+    @Override
+    public void drawText(String text, float x, float y, RenderPaint paint) {
+        mCanvas.drawText(text, x, y, toPaint(paint));
+    }
+
+    @Override
+    public float getTextHeight(String text, RenderPaint paint) {
+        toPaint(paint).getTextBounds(text, 0, text.length(), mTextBounds);
+        return mTextBounds.height();
+    }
+
+    /**
+     * Returns the Android paint for {@code paint}, translating it if it changed.
+     */
+    private Paint toPaint(RenderPaint paint) {
+        Translated<Paint> translated = mPaints.get(paint);
+        if (translated != null && translated.generation == paint.generation) {
+            return translated.value;
+        }
+        if (translated == null) {
+            final Paint value = new Paint();
+            value.setStrokeCap(Paint.Cap.BUTT);
+            value.setTextAlign(Paint.Align.CENTER);
+            translated = new Translated<>(value);
+            mPaints.put(paint, translated);
+        }
+        final Paint result = translated.value;
+        result.setColor(paint.getColor());
+        result.setAntiAlias(paint.isAntiAlias());
+        result.setStrokeWidth(paint.getStrokeWidth());
+        result.setTextSize(paint.getTextSize());
+        switch (paint.getStyle()) {
+            case STROKE:
+                result.setStyle(Paint.Style.STROKE);
+                break;
+            case FILL_AND_STROKE:
+                result.setStyle(Paint.Style.FILL_AND_STROKE);
+                break;
+            default:
+                result.setStyle(Paint.Style.FILL);
+                break;
+        }
+        if (paint.getShadowRadius() > 0) {
+            result.setShadowLayer(paint.getShadowRadius(), 0, 0, paint.getShadowColor());
+        } else {
+            result.clearShadowLayer();
+        }
+        translated.generation = paint.generation;
+        return result;
+    }
+
+    private Path toPath(FacePath path) {
+        Translated<Path> translated = mPaths.get(path);
+        if (translated != null && translated.generation == path.generation) {
+            return translated.value;
+        }
+        if (translated == null) {
+            translated = new Translated<>(new Path());
+            mPaths.put(path, translated);
+        }
+        final Path result = translated.value;
+        result.reset();
+        for (int polygon = 0; polygon < path.getPolygonCount(); polygon++) {
+            final int start = path.getPolygonStart(polygon);
+            final int end = start + path.getPolygonSize(polygon);
+            result.moveTo(path.getX(start), path.getY(start));
+            for (int point = start + 1; point < end; point++) {
+                result.lineTo(path.getX(point), path.getY(point));
+            }
+            result.close();
+        }
+        translated.generation = path.generation;
+        return result;
+    }
+
+    /* The translation of a paint or path, and the generation it was made from. */
+    private static final class Translated<T> {
+        final T value;
+        int generation = -1;
+
+        Translated(T value) {
+            this.value = value;
+        }
+    }
+}
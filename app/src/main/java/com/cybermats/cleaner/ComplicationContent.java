@@ -0,0 +1,82 @@
+package com.cybermats.cleaner;
+
+import android.content.Context;
+import android.support.wearable.complications.ComplicationData;
+import android.support.wearable.complications.ComplicationText;
+
+/**
+ * What a complication slot shows, extracted from its {@link ComplicationData} at a given time.
+ * Contents that are equal render the same, which is how the engine tells whether an update from
+ * a provider needs any work at all; providers often resend data that hasn't changed.
+ */
+final class ComplicationContent {
+    static final ComplicationContent EMPTY =
+            new ComplicationContent(null, "", Float.NaN, false);
+
+    /* The data the content was extracted from, to extract it again for time-dependent text. */
+    final ComplicationData data;
+    final String text;
+    /* Where a ranged value is between its minimum and maximum, 0..1, or NaN for other types. */
+    final float fraction;
+    final boolean timeDependent;
+
+    private ComplicationContent(ComplicationData data, String text, float fraction,
+                                boolean timeDependent) {
+        this.data = data;
+        this.text = text;
+        this.fraction = fraction;
+        this.timeDependent = timeDependent;
+    }
+
+    /**
+     * Extracts what {@code data} shows at {@code timeMs}. Only short text and ranged values are
+     * supported, other types show nothing.
+     */
+    static ComplicationContent from(Context context, ComplicationData data, long timeMs) {
+        if (data == null || !data.isActive(timeMs)) {
+            return EMPTY;
+        }
+        final int type = data.getType();
+        if (type != ComplicationData.TYPE_SHORT_TEXT
+                && type != ComplicationData.TYPE_RANGED_VALUE) {
+            return EMPTY;
+        }
+
+        final ComplicationText shortText = data.getShortText();
+        final CharSequence text = shortText != null ? shortText.getText(context, timeMs) : null;
+        float fraction = Float.NaN;
+        if (type == ComplicationData.TYPE_RANGED_VALUE) {
+            final float range = data.getMaxValue() - data.getMinValue();
+            fraction = range > 0 ? (data.getValue() - data.getMinValue()) / range : 0f;
+            fraction = Math.max(0f, Math.min(1f, fraction));
+        }
+        return new ComplicationContent(data, text != null ? text.toString() : "", fraction,
+                shortText != null && shortText.isTimeDependent());
+    }
+
+    boolean isEmpty() {
+        return text.isEmpty() && Float.isNaN(fraction);
+    }
+
+    /**
+     * Contents are equal if they render the same, regardless of the data they came from.
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof ComplicationContent)) {
+            return false;
+        }
+        final ComplicationContent other = (ComplicationContent) o;
+        return text.equals(other.text)
+                && Float.floatToIntBits(fraction) == Float.floatToIntBits(other.fraction)
+                && timeDependent == other.timeDependent;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * text.hashCode() + Float.floatToIntBits(fraction);
+    }
+}
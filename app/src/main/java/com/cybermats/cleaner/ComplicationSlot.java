@@ -0,0 +1,133 @@
+package com.cybermats.cleaner;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+
+/**
+ * A complication on the face, rendered into a cached bitmap when its content changes, with
+ * separate bitmaps for interactive and ambient mode. The engine composites the bitmap into the
+ * dial layer, so a complication costs nothing per frame while its content is unchanged. The
+ * bitmaps are held against the engine's {@link BitmapBudget}; without them the complication is
+ * rendered straight onto the dial.
+ */
+class ComplicationSlot {
+    private final BitmapBudget mBudget;
+    private final String mInteractiveRole;
+    private final String mAmbientRole;
+    private final CanvasRenderTarget mTarget = new CanvasRenderTarget();
+    private ComplicationContent mContent = ComplicationContent.EMPTY;
+    private Bitmap mInteractiveBitmap;
+    private Bitmap mAmbientBitmap;
+    private boolean mInteractiveValid;
+    private boolean mAmbientValid;
+    /* The text paint each bitmap was rendered with. Paints are never modified, see PaintSet. */
+    private RenderPaint mInteractivePaint;
+    private RenderPaint mAmbientPaint;
+    private float mLeft;
+    private float mTop;
+    private int mWidth;
+    private int mHeight;
+
+    ComplicationSlot(BitmapBudget budget, String role) {
+        mBudget = budget;
+        mInteractiveRole = role;
+        mAmbientRole = role + "Ambient";
+    }
+
+    /**
+     * @return true if the slot looks different with the new content.
+     */
+    boolean setContent(ComplicationContent content) {
+        if (content.equals(mContent)) {
+            mContent = content;
+            return false;
+        }
+        mContent = content;
+        mInteractiveValid = false;
+        mAmbientValid = false;
+        return true;
+    }
+
+    ComplicationContent getContent() {
+        return mContent;
+    }
+
+    void setBounds(float left, float top, float right, float bottom) {
+        mLeft = left;
+        mTop = top;
+        mWidth = (int) Math.ceil(right - left);
+        mHeight = (int) Math.ceil(bottom - top);
+        mInteractiveValid = false;
+        mAmbientValid = false;
+    }
+
+    /**
+     * Draws the slot onto the dial, rendering its bitmap for the current mode first if needed.
+     * The paints must be the ones for {@code ambient}; the bitmap is rendered again when they are
+     * different ones than last time.
+     */
+    void draw(Canvas canvas, boolean ambient, RenderPaint textPaint, RenderPaint boxPaint) {
+        if (mContent.isEmpty() || mWidth <= 0 || mHeight <= 0) {
+            return;
+        }
+        Bitmap bitmap = ambient ? mAmbientBitmap : mInteractiveBitmap;
+        final boolean valid = ambient
+                ? mAmbientValid && mAmbientPaint == textPaint
+                : mInteractiveValid && mInteractivePaint == textPaint;
+        if (!valid) {
+            bitmap = mBudget.obtain(ambient ? mAmbientRole : mInteractiveRole, bitmap, mWidth,
+                    mHeight, Bitmap.Config.ARGB_8888);
+            if (bitmap == null) {
+                drop(ambient);
+                canvas.save();
+                canvas.translate(mLeft, mTop);
+                render(mTarget.setCanvas(canvas), ambient, textPaint, boxPaint);
+                canvas.restore();
+                return;
+            }
+            bitmap.eraseColor(Color.TRANSPARENT);
+            render(mTarget.setCanvas(new Canvas(bitmap)), ambient, textPaint, boxPaint);
+            if (ambient) {
+                mAmbientBitmap = bitmap;
+                mAmbientValid = true;
+                mAmbientPaint = textPaint;
+            } else {
+                mInteractiveBitmap = bitmap;
+                mInteractiveValid = true;
+                mInteractivePaint = textPaint;
+            }
+        }
+        canvas.drawBitmap(bitmap, mLeft, mTop, null);
+    }
+
+    private void drop(boolean ambient) {
+        if (ambient) {
+            mAmbientBitmap = null;
+            mAmbientValid = false;
+        } else {
+            mInteractiveBitmap = null;
+            mInteractiveValid = false;
+        }
+    }
+
+    /*
+     * Styled like the date box: the text centered in a thin box, with a ranged value as a bar
+     * along the bottom. The box is left out in ambient mode, like the date box.
+     */
+    private void render(RenderTarget target, boolean ambient, RenderPaint textPaint,
+                        RenderPaint boxPaint) {
+        final String text = mContent.text;
+        target.drawText(text, mWidth / 2f,
+                mHeight / 2f + target.getTextHeight(text, textPaint) / 2f, textPaint);
+
+        final float fraction = mContent.fraction;
+        if (!Float.isNaN(fraction)) {
+            final float barHeight = mHeight / 10f;
+            target.drawRect(0, mHeight - barHeight, mWidth * fraction, mHeight, textPaint);
+        }
+        if (!ambient) {
+            target.drawRect(0, 0, mWidth - 1, mHeight - 1, boxPaint);
+        }
+    }
+}
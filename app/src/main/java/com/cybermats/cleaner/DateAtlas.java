@@ -0,0 +1,116 @@
+package com.cybermats.cleaner;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Rect;
+
+/**
+ * The date numerals 1 to 31 pre-rendered into an atlas, so that a frame draws the date with one
+ * bitmap blit instead of laying out text. Each cell is the size of the date box, with the numeral
+ * drawn where {@link FacePainter#drawDate} would draw it on the face.
+ * <p>
+ * The atlas only holds coverage, as an {@link Bitmap.Config#ALPHA_8} bitmap, and is tinted with
+ * the text colour when drawn. It is rendered again only when the geometry or the text paint
+ * changes. The bitmap is held against the engine's {@link BitmapBudget}; without it the date has
+ * to be drawn as text.
+ */
+class DateAtlas {
+    private static final int DAYS = 31;
+    private static final int COLUMNS = 8;
+    private static final int ROWS = (DAYS + COLUMNS - 1) / COLUMNS;
+
+    private final BitmapBudget mBudget;
+    private final String mRole;
+    private final CanvasRenderTarget mTarget = new CanvasRenderTarget();
+    private final Paint mPaint = new Paint();
+    private final Rect mSource = new Rect();
+    private final Rect mDestination = new Rect();
+    private Bitmap mBitmap;
+    /* What the atlas was rendered for. */
+    private FaceGeometry mGeometry;
+    private RenderPaint mTextPaint;
+    private int mTextPaintGeneration;
+    /* Top left corner of the date box's cell on the face, and the cell size. */
+    private int mLeft;
+    private int mTop;
+    private int mCellWidth;
+    private int mCellHeight;
+
+    DateAtlas(BitmapBudget budget, String role) {
+        mBudget = budget;
+        mRole = role;
+    }
+
+    /**
+     * Renders the atlas for {@code geometry} and {@code textPaint}, unless it is up to date.
+     *
+     * @param days the text for each day of the month, indexed by day.
+     */
+    void update(FaceGeometry geometry, RenderPaint textPaint, String[] days) {
+        if (geometry == mGeometry && textPaint == mTextPaint
+                && textPaint.generation == mTextPaintGeneration) {
+            return;
+        }
+
+        mLeft = (int) Math.floor(geometry.dateTextLeft);
+        mTop = (int) Math.floor(geometry.dateTextTop);
+        mCellWidth = (int) Math.ceil(geometry.dateTextRight) - mLeft;
+        mCellHeight = (int) Math.ceil(geometry.dateTextBottom) - mTop;
+        final int width = mCellWidth * COLUMNS;
+        final int height = mCellHeight * ROWS;
+        if (width <= 0 || height <= 0) {
+            mBitmap = null;
+            mBudget.release(mRole);
+            rendered(geometry, textPaint);
+            return;
+        }
+        mBitmap = mBudget.obtain(mRole, mBitmap, width, height, Bitmap.Config.ALPHA_8);
+        if (mBitmap == null) {
+            /* Not rendered, so the next update tries again, e.g. once memory was reclaimed. */
+            return;
+        }
+        mBitmap.eraseColor(0);
+
+        final Canvas canvas = new Canvas(mBitmap);
+        mTarget.setCanvas(canvas);
+        for (int day = 1; day <= DAYS; day++) {
+            cell(day, mSource);
+            canvas.save();
+            canvas.clipRect(mSource);
+            canvas.translate(mSource.left - mLeft, mSource.top - mTop);
+            FacePainter.drawDate(mTarget, geometry, days[day], textPaint);
+            canvas.restore();
+        }
+        /* The coverage already has the paint's alpha, only tint it with the colour. */
+        mPaint.setColor(textPaint.getColor() | 0xff000000);
+        rendered(geometry, textPaint);
+    }
+
+    private void rendered(FaceGeometry geometry, RenderPaint textPaint) {
+        mGeometry = geometry;
+        mTextPaint = textPaint;
+        mTextPaintGeneration = textPaint.generation;
+    }
+
+    /**
+     * Draws {@code day} in the date box.
+     *
+     * @return false if there is no atlas to draw it from, e.g. over the budget.
+     */
+    boolean draw(Canvas canvas, int day) {
+        if (mBitmap == null || day < 1 || day > DAYS) {
+            return false;
+        }
+        cell(day, mSource);
+        mDestination.set(mLeft, mTop, mLeft + mCellWidth, mTop + mCellHeight);
+        canvas.drawBitmap(mBitmap, mSource, mDestination, mPaint);
+        return true;
+    }
+
+    private void cell(int day, Rect out) {
+        final int left = (day - 1) % COLUMNS * mCellWidth;
+        final int top = (day - 1) / COLUMNS * mCellHeight;
+        out.set(left, top, left + mCellWidth, top + mCellHeight);
+    }
+}
@@ -0,0 +1,91 @@
+package com.cybermats.cleaner;
+
+import java.util.TimeZone;
+
+/**
+ * The inputs to the face that don't come from the clock: battery level, mute mode and time zone.
+ * Each input is quantized to what the face can actually show, so that the engines only redraw
+ * when a change would be visible. Battery broadcasts in particular arrive for every voltage and
+ * temperature change, while the battery bar only moves when the level crosses a whole pixel.
+ */
+class FaceInputs {
+    private float mBatteryPercent;
+    private boolean mBatteryLevelKnown;
+    /* Height of the battery bar in whole pixels, or -1 if not known. */
+    private int mBatteryBarPx = -1;
+    private float mBatteryBarHeight;
+    private boolean mMuteMode;
+
+    /**
+     * Sets the height, in pixels, of the full battery bar. Must be called when the surface
+     * changes.
+     */
+    void setBatteryBarHeight(float height) {
+        mBatteryBarHeight = height;
+        mBatteryBarPx = mBatteryLevelKnown ? quantizeBattery(mBatteryPercent) : -1;
+    }
+
+    /**
+     * @return true if the battery bar needs to be redrawn.
+     */
+    boolean setBatteryPercent(float batteryPercent) {
+        mBatteryPercent = batteryPercent;
+        mBatteryLevelKnown = true;
+        final int barPx = quantizeBattery(batteryPercent);
+        if (barPx == mBatteryBarPx) {
+            return false;
+        }
+        mBatteryBarPx = barPx;
+        return true;
+    }
+
+    /**
+     * @return true if mute mode changed.
+     */
+    boolean setMuteMode(boolean muteMode) {
+        if (mMuteMode == muteMode) {
+            return false;
+        }
+        mMuteMode = muteMode;
+        return true;
+    }
+
+    /**
+     * Moves {@code timeModel} to a new time zone.
+     *
+     * @return true if the hands or the date are affected, i.e. the UTC offset at {@code timeMs}
+     * differs between the old and the new zone.
+     */
+    static boolean setTimeZone(TimeModel timeModel, TimeZone timeZone, long timeMs) {
+        timeModel.setTime(timeMs);
+        final int oldOffsetMs = timeModel.getOffsetMs();
+        timeModel.setTimeZone(timeZone);
+        timeModel.setTime(timeMs);
+        return timeModel.getOffsetMs() != oldOffsetMs;
+    }
+
+    /**
+     * Returns the battery level as it is drawn, i.e. rounded to whole pixels of the battery bar.
+     */
+    float getDisplayedBatteryPercent() {
+        if (!mBatteryLevelKnown || mBatteryBarHeight <= 0) {
+            return mBatteryPercent;
+        }
+        return mBatteryBarPx / mBatteryBarHeight;
+    }
+
+    /**
+     * Returns the raw battery level, or a full battery if no level has been received yet.
+     */
+    float getBatteryPercent() {
+        return mBatteryLevelKnown ? mBatteryPercent : 1f;
+    }
+
+    boolean isMuteMode() {
+        return mMuteMode;
+    }
+
+    private int quantizeBattery(float batteryPercent) {
+        return Math.round(Math.max(0f, Math.min(1f, batteryPercent)) * mBatteryBarHeight);
+    }
+}
@@ -0,0 +1,49 @@
+package com.cybermats.cleaner;
+
+import java.util.TimeZone;
+
+/**
+ * An immutable snapshot of the engine state the face is drawn from, apart from the time itself.
+ * The main thread, where callbacks and broadcasts arrive, builds a new snapshot whenever an input
+ * changes and publishes it to the render thread, which picks up the latest one at the start of
+ * every frame.
+ * <p>
+ * The {@link FaceGeometry} is shared, not copied, so it must not be modified once it is part of a
+ * published snapshot; the engine creates a new one when the surface changes instead.
+ */
+final class FaceState {
+    final FaceGeometry geometry;
+    final TimeZone timeZone;
+    final boolean visible;
+    final boolean ambient;
+    /* Display properties that change how the ambient face is drawn. */
+    final boolean lowBitAmbient;
+    final boolean burnInProtection;
+    final boolean muteMode;
+    /* The paints for every mode, built from the selected theme. Immutable too. */
+    final PaintSets paints;
+    /* Raw battery level for the frame rate governor, and the level as the battery bar shows it. */
+    final float batteryPercent;
+    final float displayedBatteryPercent;
+    final boolean frameStatsVisible;
+    /* Content of each complication slot, indexed by complication id. Not modified either. */
+    final ComplicationContent[] complications;
+
+    FaceState(FaceGeometry geometry, TimeZone timeZone, boolean visible, boolean ambient,
+              boolean lowBitAmbient, boolean burnInProtection, boolean muteMode,
+              PaintSets paints, float batteryPercent, float displayedBatteryPercent,
+              boolean frameStatsVisible, ComplicationContent[] complications) {
+        this.geometry = geometry;
+        this.timeZone = timeZone;
+        this.visible = visible;
+        this.ambient = ambient;
+        this.lowBitAmbient = lowBitAmbient;
+        this.burnInProtection = burnInProtection;
+        this.muteMode = muteMode;
+        this.paints = paints;
+        this.batteryPercent = batteryPercent;
+        this.displayedBatteryPercent = displayedBatteryPercent;
+        this.frameStatsVisible = frameStatsVisible;
+        this.complications = complications;
+    }
+}
@@ -0,0 +1,156 @@
+package com.cybermats.cleaner;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Chooses how often the watch face redraws in interactive mode. A healthy battery gets a smooth
+ * sweeping second hand, a draining battery or mute mode gets a reduced-rate sweep, and a low
+ * battery falls back to a classic once-a-second tick.
+ * <p>
+ * The battery thresholds have separate enter and leave levels so that a battery hovering around a
+ * threshold doesn't make the second hand flap between modes.
+ * <p>
+ * A sweep's rate is the fastest it redraws. The frames are spaced further apart when the tip of
+ * the second hand wouldn't move far enough on screen in that time, see {@link #setSecondHand}, so
+ * a small screen doesn't draw frames that look the same as the last one.
+ */
+class FrameRateGovernor {
+
+    enum Mode {
+        SMOOTH_SWEEP(TimeUnit.MILLISECONDS.toMillis(33)),
+        REDUCED_SWEEP(TimeUnit.MILLISECONDS.toMillis(100)),
+        TICK(TimeUnit.SECONDS.toMillis(1));
+
+        final long updateRateMs;
+
+        Mode(long updateRateMs) {
+            this.updateRateMs = updateRateMs;
+        }
+    }
+
+    /* Battery levels (0..1) where the governor steps down, and the levels to step back up. */
+    private static final float REDUCED_ENTER_LEVEL = 0.45f;
+    private static final float REDUCED_LEAVE_LEVEL = 0.55f;
+    private static final float TICK_ENTER_LEVEL = 0.15f;
+    private static final float TICK_LEAVE_LEVEL = 0.25f;
+
+    private static final long MILLIS_PER_MINUTE = TimeUnit.MINUTES.toMillis(1);
+
+    private final long mSmoothSweepRateMs;
+    private Mode mMode = Mode.SMOOTH_SWEEP;
+    private Mode mBatteryMode = Mode.SMOOTH_SWEEP;
+    /* How long the second hand's tip takes to move the minimum step, or 0 if not known. */
+    private long mMinStepMs;
+
+    FrameRateGovernor() {
+        this(Mode.SMOOTH_SWEEP.updateRateMs);
+    }
+
+    /**
+     * @param smoothSweepRateMs update rate to use instead of the default for
+     *                          {@link Mode#SMOOTH_SWEEP}, for renderers that can afford more.
+     */
+    FrameRateGovernor(long smoothSweepRateMs) {
+        mSmoothSweepRateMs = smoothSweepRateMs;
+    }
+
+    /**
+     * Sets the second hand's on-screen length, which sweeps are paced by. Must be called when
+     * the surface changes.
+     *
+     * @param frontLengthPx length of the second hand from the center to its tip, in pixels.
+     * @param minStepPx     how far the tip must move between two frames, in pixels.
+     */
+    void setSecondHand(float frontLengthPx, float minStepPx) {
+        if (frontLengthPx <= 0f || minStepPx <= 0f) {
+            mMinStepMs = 0;
+            return;
+        }
+        /* The tip moves a full circle a minute. */
+        final double tipPxPerMs = 2 * Math.PI * frontLengthPx / MILLIS_PER_MINUTE;
+        mMinStepMs = Math.min((long) Math.ceil(minStepPx / tipPxPerMs),
+                Mode.TICK.updateRateMs);
+    }
+
+    /**
+     * Re-evaluates the mode from the current engine state.
+     *
+     * @return true if the mode changed.
+     */
+    boolean update(float batteryPercent, boolean muteMode, boolean visible) {
+        mBatteryMode = batteryMode(mBatteryMode, batteryPercent);
+
+        Mode mode = mBatteryMode;
+        if (!visible) {
+            mode = Mode.TICK;
+        } else if (muteMode && mode == Mode.SMOOTH_SWEEP) {
+            mode = Mode.REDUCED_SWEEP;
+        }
+
+        if (mode == mMode) {
+            return false;
+        }
+        mMode = mode;
+        return true;
+    }
+
+    private static Mode batteryMode(Mode current, float batteryPercent) {
+        switch (current) {
+            case SMOOTH_SWEEP:
+                if (batteryPercent < TICK_ENTER_LEVEL) {
+                    return Mode.TICK;
+                }
+                if (batteryPercent < REDUCED_ENTER_LEVEL) {
+                    return Mode.REDUCED_SWEEP;
+                }
+                return Mode.SMOOTH_SWEEP;
+            case REDUCED_SWEEP:
+                if (batteryPercent < TICK_ENTER_LEVEL) {
+                    return Mode.TICK;
+                }
+                if (batteryPercent > REDUCED_LEAVE_LEVEL) {
+                    return Mode.SMOOTH_SWEEP;
+                }
+                return Mode.REDUCED_SWEEP;
+            default:
+                if (batteryPercent > REDUCED_LEAVE_LEVEL) {
+                    return Mode.SMOOTH_SWEEP;
+                }
+                if (batteryPercent > TICK_LEAVE_LEVEL) {
+                    return Mode.REDUCED_SWEEP;
+                }
+                return Mode.TICK;
+        }
+    }
+
+    Mode getMode() {
+        return mMode;
+    }
+
+    long getUpdateRateMs() {
+        if (mMode == Mode.TICK) {
+            return mMode.updateRateMs;
+        }
+        return Math.max(sweepRateMs(), mMinStepMs);
+    }
+
+    /**
+     * Returns whether {@link #getUpdateRateMs} is set by how fast the second hand's tip moves
+     * rather than by the mode. The rate is then the shortest interval between two frames that
+     * differ, which frames may be spaced further apart than, but not closer.
+     */
+    boolean isMotionPaced() {
+        return mMode != Mode.TICK && mMinStepMs > sweepRateMs();
+    }
+
+    private long sweepRateMs() {
+        return mMode == Mode.SMOOTH_SWEEP ? mSmoothSweepRateMs : mMode.updateRateMs;
+    }
+
+    /**
+     * Returns whether the second hand should jump from second to second instead of sweeping.
+     */
+    boolean isTicking() {
+        return mMode == Mode.TICK;
+    }
+}
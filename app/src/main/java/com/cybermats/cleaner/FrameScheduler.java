@@ -0,0 +1,127 @@
+package com.cybermats.cleaner;
+
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.view.Choreographer;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Schedules interactive frames on display vsync through {@link Choreographer}, at the divisor of
+ * the refresh rate closest to the update rate asked for, or the next longer one when the rate is
+ * a minimum, see {@link #setUpdateRateIsMinimum}. Each frame is handed the wall clock time
+ * it is expected to be presented at, so that the hands are drawn where they should be when the
+ * frame is on screen, not where they were when drawing started.
+ * <p>
+ * Skipped vsyncs are slept through with a delayed frame callback instead of being woken up for.
+ * Update rates of a second or more are aligned to the wall clock, so that a ticking second hand
+ * jumps on the second.
+ * <p>
+ * Must be created and used on a thread with a looper, which the frames are drawn on.
+ */
+@TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+class FrameScheduler implements Choreographer.FrameCallback {
+
+    interface Callback {
+        /**
+         * Draws a frame.
+         *
+         * @param presentationTimeMs wall clock time the frame is expected to be shown at.
+         * @param latenessNanos      how far past the vsync it was scheduled for this frame is.
+         * @return the update rate for the next frame, or 0 to stop.
+         */
+        long onFrame(long presentationTimeMs, long latenessNanos);
+    }
+
+    private static final long ALIGNED_UPDATE_RATE_MS = TimeUnit.SECONDS.toMillis(1);
+
+    private final Choreographer mChoreographer = Choreographer.getInstance();
+    private final Callback mCallback;
+    private final long mFrameIntervalNanos;
+    private boolean mRunning;
+    private boolean mUpdateRateIsMinimum;
+    /* The vsync the next frame is meant for, in System.nanoTime() time, or 0 for any. */
+    private long mTargetFrameNanos;
+
+    /**
+     * @param refreshRate refresh rate of the display, in frames per second.
+     */
+    FrameScheduler(float refreshRate, Callback callback) {
+        /* Some devices report nonsense refresh rates, assume 60 Hz for those. */
+        if (refreshRate < 10f || refreshRate > 240f) {
+            refreshRate = 60f;
+        }
+        mFrameIntervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / refreshRate);
+        mCallback = callback;
+    }
+
+    long getFrameIntervalNanos() {
+        return mFrameIntervalNanos;
+    }
+
+    /**
+     * Sets whether the update rates returned by the callback are the shortest interval allowed
+     * between two frames, e.g. because closer frames would look the same, rather than a rate to
+     * come close to. Such rates are rounded up to a whole number of vsync intervals instead of
+     * to the nearest.
+     */
+    void setUpdateRateIsMinimum(boolean minimum) {
+        mUpdateRateIsMinimum = minimum;
+    }
+
+    /**
+     * Starts drawing frames from the next vsync, or restarts if already running.
+     */
+    void start() {
+        mChoreographer.removeFrameCallback(this);
+        mRunning = true;
+        mTargetFrameNanos = 0;
+        mChoreographer.postFrameCallback(this);
+    }
+
+    void stop() {
+        mRunning = false;
+        mChoreographer.removeFrameCallback(this);
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        if (!mRunning) {
+            return;
+        }
+        final long latenessNanos =
+                mTargetFrameNanos == 0 ? 0 : Math.max(0, frameTimeNanos - mTargetFrameNanos);
+
+        /* A frame drawn during this vsync interval is shown at the next one. */
+        final long presentationNanos = frameTimeNanos + mFrameIntervalNanos;
+        final long presentationTimeMs = System.currentTimeMillis()
+                + TimeUnit.NANOSECONDS.toMillis(presentationNanos - System.nanoTime());
+
+        final long updateRateMs = mCallback.onFrame(presentationTimeMs, latenessNanos);
+        if (updateRateMs <= 0 || !mRunning) {
+            mRunning = false;
+            return;
+        }
+
+        long divisor;
+        if (updateRateMs >= ALIGNED_UPDATE_RATE_MS) {
+            /* Present the next frame at the first vsync at or after the next multiple of rate. */
+            final long untilNextNanos = TimeUnit.MILLISECONDS.toNanos(
+                    updateRateMs - presentationTimeMs % updateRateMs);
+            divisor = (untilNextNanos + mFrameIntervalNanos - 1) / mFrameIntervalNanos;
+        } else if (mUpdateRateIsMinimum) {
+            divisor = (TimeUnit.MILLISECONDS.toNanos(updateRateMs) + mFrameIntervalNanos - 1)
+                    / mFrameIntervalNanos;
+        } else {
+            divisor = Math.round(
+                    TimeUnit.MILLISECONDS.toNanos(updateRateMs) / (double) mFrameIntervalNanos);
+        }
+        divisor = Math.max(1, divisor);
+        mTargetFrameNanos = frameTimeNanos + divisor * mFrameIntervalNanos;
+
+        /* Sleep through the skipped vsyncs, waking up half an interval before the target one. */
+        final long delayNanos = mTargetFrameNanos - mFrameIntervalNanos / 2 - System.nanoTime();
+        mChoreographer.postFrameCallbackDelayed(this,
+                Math.max(0, TimeUnit.NANOSECONDS.toMillis(delayNanos)));
+    }
+}
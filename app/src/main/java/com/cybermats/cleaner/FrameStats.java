@@ -0,0 +1,228 @@
+package com.cybermats.cleaner;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Records how long frames take to draw and how late the update timer fires, in fixed-size
+ * histograms so that recording never allocates. Percentiles are read from the histograms with a
+ * resolution of {@link #BUCKET_NANOS}.
+ * <p>
+ * A frame counts as dropped when the timer fires a full update interval or more after it was
+ * due, i.e. at least one frame the governor asked for never happened.
+ * <p>
+ * Ambient frames also record how many of their pixels are lit, which is what they cost in power on
+ * OLED displays, against a budget in percent of the display.
+ */
+class FrameStats {
+    private static final long BUCKET_NANOS = TimeUnit.MICROSECONDS.toNanos(250);
+    /* 256 buckets of 0.25 ms cover 0-64 ms, slower samples go in an overflow bucket. */
+    private static final int BUCKETS = 256;
+
+    final Histogram draw = new Histogram();
+    final Histogram lateness = new Histogram();
+    /* Time from an ambient onTimeTick until the frame has been drawn. */
+    final Histogram ambientWake = new Histogram();
+    private int mDroppedFrames;
+    private int mAmbientFrames;
+    private int mAmbientFramesOverBudget;
+    private float mLitPercent;
+    private float mMaxLitPercent;
+
+    void recordDraw(long durationNanos) {
+        draw.record(durationNanos);
+    }
+
+    void recordAmbientWake(long durationNanos) {
+        ambientWake.record(durationNanos);
+    }
+
+    /**
+     * Records an ambient frame with {@code litPixels} of its {@code totalPixels} lit.
+     *
+     * @return true if the frame is over {@code budgetPercent}.
+     */
+    boolean recordLitPixels(int litPixels, int totalPixels, int budgetPercent) {
+        mLitPercent = totalPixels > 0 ? 100f * litPixels / totalPixels : 0;
+        mMaxLitPercent = Math.max(mMaxLitPercent, mLitPercent);
+        mAmbientFrames++;
+        if (mLitPercent > budgetPercent) {
+            mAmbientFramesOverBudget++;
+            return true;
+        }
+        return false;
+    }
+
+    float getLitPercent() {
+        return mLitPercent;
+    }
+
+    /**
+     * Records a timer update that was due {@code latenessMs} ago, for a timer that runs every
+     * {@code intervalMs}.
+     */
+    void recordUpdate(long latenessMs, long intervalMs) {
+        lateness.record(TimeUnit.MILLISECONDS.toNanos(latenessMs));
+        if (latenessMs >= intervalMs) {
+            mDroppedFrames++;
+        }
+    }
+
+    /**
+     * Records a vsync-scheduled frame that started {@code latenessNanos} after the vsync it was
+     * meant for. The frame is dropped if that made it miss its vsync.
+     */
+    void recordFrameLateness(long latenessNanos, long frameIntervalNanos) {
+        lateness.record(latenessNanos);
+        if (latenessNanos >= frameIntervalNanos / 2) {
+            mDroppedFrames++;
+        }
+    }
+
+    int getDroppedFrames() {
+        return mDroppedFrames;
+    }
+
+    void reset() {
+        draw.reset();
+        lateness.reset();
+        ambientWake.reset();
+        mDroppedFrames = 0;
+        mAmbientFrames = 0;
+        mAmbientFramesOverBudget = 0;
+        mLitPercent = 0;
+        mMaxLitPercent = 0;
+    }
+
+    /**
+     * Writes a one line summary of the draw durations into {@code out}, without allocating.
+     *
+     * @return the number of characters written.
+     */
+    int formatDraw(char[] out) {
+        int pos = append(out, 0, "draw");
+        return appendPercentiles(out, pos, draw);
+    }
+
+    /**
+     * Writes a one line summary of the timer lateness and dropped frames into {@code out},
+     * without allocating.
+     *
+     * @return the number of characters written.
+     */
+    int formatLateness(char[] out) {
+        int pos = append(out, 0, "late");
+        pos = appendPercentiles(out, pos, lateness);
+        pos = append(out, pos, " drop ");
+        pos = appendInt(out, pos, mDroppedFrames);
+        pos = append(out, pos, "/");
+        return appendInt(out, pos, lateness.getCount());
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.US,
+                "draw p50=%.2f p95=%.2f p99=%.2f ms (%d frames), "
+                        + "late p50=%.2f p95=%.2f p99=%.2f ms, dropped %d/%d, "
+                        + "ambient wake p50=%.2f p95=%.2f ms (%d frames), "
+                        + "ambient lit %.1f%% max %.1f%%, over budget %d/%d",
+                draw.percentileMs(0.5f), draw.percentileMs(0.95f), draw.percentileMs(0.99f),
+                draw.getCount(),
+                lateness.percentileMs(0.5f), lateness.percentileMs(0.95f),
+                lateness.percentileMs(0.99f),
+                mDroppedFrames, lateness.getCount(),
+                ambientWake.percentileMs(0.5f), ambientWake.percentileMs(0.95f),
+                ambientWake.getCount(),
+                mLitPercent, mMaxLitPercent, mAmbientFramesOverBudget, mAmbientFrames);
+    }
+
+    private static int appendPercentiles(char[] out, int pos, Histogram histogram) {
+        pos = append(out, pos, " 50% ");
+        pos = appendMs(out, pos, histogram.percentileMs(0.5f));
+        pos = append(out, pos, " 95% ");
+        pos = appendMs(out, pos, histogram.percentileMs(0.95f));
+        pos = append(out, pos, " 99% ");
+        return appendMs(out, pos, histogram.percentileMs(0.99f));
+    }
+
+    private static int append(char[] out, int pos, String text) {
+        final int length = Math.min(text.length(), out.length - pos);
+        text.getChars(0, length, out, pos);
+        return pos + length;
+    }
+
+    private static int appendInt(char[] out, int pos, int value) {
+        if (value < 0) {
+            if (pos < out.length) {
+                out[pos++] = '-';
+            }
+            value = -value;
+        }
+        int digits = 1;
+        for (int v = value / 10; v > 0; v /= 10) {
+            digits++;
+        }
+        if (pos + digits > out.length) {
+            return pos;
+        }
+        for (int i = digits - 1; i >= 0; i--) {
+            out[pos + i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+        return pos + digits;
+    }
+
+    /* Milliseconds with two decimals, which is the histogram resolution. */
+    private static int appendMs(char[] out, int pos, float ms) {
+        final int hundredths = Math.round(ms * 100);
+        pos = appendInt(out, pos, hundredths / 100);
+        if (pos + 3 > out.length) {
+            return pos;
+        }
+        out[pos++] = '.';
+        out[pos++] = (char) ('0' + hundredths / 10 % 10);
+        out[pos++] = (char) ('0' + hundredths % 10);
+        return pos;
+    }
+
+    static class Histogram {
+        private final int[] mCounts = new int[BUCKETS + 1];
+        private int mCount;
+
+        void record(long nanos) {
+            int bucket = (int) Math.min(BUCKETS, Math.max(0, nanos / BUCKET_NANOS));
+            mCounts[bucket]++;
+            mCount++;
+        }
+
+        int getCount() {
+            return mCount;
+        }
+
+        /**
+         * Returns the upper bound, in milliseconds, of the bucket holding the given percentile
+         * ({@code 0..1}), or 0 if nothing has been recorded.
+         */
+        float percentileMs(float percentile) {
+            if (mCount == 0) {
+                return 0;
+            }
+            final int target = Math.max(1, (int) Math.ceil(percentile * mCount));
+            int seen = 0;
+            for (int bucket = 0; bucket <= BUCKETS; bucket++) {
+                seen += mCounts[bucket];
+                if (seen >= target) {
+                    return (bucket + 1) * BUCKET_NANOS / (float) TimeUnit.MILLISECONDS.toNanos(1);
+                }
+            }
+            return (BUCKETS + 1) * BUCKET_NANOS / (float) TimeUnit.MILLISECONDS.toNanos(1);
+        }
+
+        void reset() {
+            for (int i = 0; i < mCounts.length; i++) {
+                mCounts[i] = 0;
+            }
+            mCount = 0;
+        }
+    }
+}
@@ -0,0 +1,526 @@
+package com.cybermats.cleaner;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.opengl.GLES20;
+import android.opengl.GLUtils;
+import android.opengl.Matrix;
+import android.util.Log;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+
+/**
+ * Draws the watch face with OpenGL ES 2.0. All geometry is uploaded to vertex buffers once per
+ * surface size from {@link FaceGeometry}; each frame only sets a transform and colour per draw
+ * call. The hands are stored pointing at twelve o'clock around the origin and rotated by their
+ * model matrix. The colours are taken from the {@link PaintSet} for the display mode, like the
+ * Canvas engine's, so both follow the theme.
+ * <p>
+ * Hand shadows are not drawn, as there is no cheap blur on this path.
+ */
+class GlFaceRenderer {
+    private static final String TAG = "GlFaceRenderer";
+
+    private static final String COLOR_VERTEX_SHADER = ""
+            + "uniform mat4 uMvpMatrix;\n"
+            + "attribute vec4 aPosition;\n"
+            + "void main() {\n"
+            + "    gl_Position = uMvpMatrix * aPosition;\n"
+            + "}\n";
+
+    private static final String COLOR_FRAGMENT_SHADER = ""
+            + "precision mediump float;\n"
+            + "uniform vec4 uColor;\n"
+            + "void main() {\n"
+            + "    gl_FragColor = uColor;\n"
+            + "}\n";
+
+    private static final String TEXTURE_VERTEX_SHADER = ""
+            + "uniform mat4 uMvpMatrix;\n"
+            + "attribute vec4 aPosition;\n"
+            + "attribute vec2 aTexCoord;\n"
+            + "varying vec2 vTexCoord;\n"
+            + "void main() {\n"
+            + "    gl_Position = uMvpMatrix * aPosition;\n"
+            + "    vTexCoord = aTexCoord;\n"
+            + "}\n";
+
+    private static final String TEXTURE_FRAGMENT_SHADER = ""
+            + "precision mediump float;\n"
+            + "uniform sampler2D uTexture;\n"
+            + "uniform vec4 uColor;\n"
+            + "varying vec2 vTexCoord;\n"
+            + "void main() {\n"
+            + "    gl_FragColor = texture2D(uTexture, vTexCoord) * uColor;\n"
+            + "}\n";
+
+    private static final int FLOAT_BYTES = 4;
+    private static final int CIRCLE_SEGMENTS = 24;
+
+    /* Segments of the dial vertex buffer, in pixel coordinates. */
+    private static final int DIAL_SMALL_TICKS = 0;
+    private static final int DIAL_HOUR_TICKS = 1;
+    private static final int DIAL_HOUR_TICK_OUTLINES = 2;
+    private static final int DIAL_HOUR_TICK_HIGHLIGHTS = 3;
+    private static final int DIAL_TWELVE_MARKER = 4;
+    private static final int DIAL_TWELVE_HIGHLIGHT = 5;
+    private static final int DIAL_TWELVE_OUTLINES = 6;
+    private static final int DIAL_DATE_BOX = 7;
+    private static final int DIAL_SEGMENTS = 8;
+
+    /* Segments of the hands vertex buffer, around the origin. */
+    private static final int HAND_HOUR = 0;
+    private static final int HAND_HOUR_HIGHLIGHT = 1;
+    private static final int HAND_HOUR_OUTLINE = 2;
+    private static final int HAND_MINUTE = 3;
+    private static final int HAND_MINUTE_HIGHLIGHT = 4;
+    private static final int HAND_MINUTE_OUTLINE = 5;
+    private static final int HAND_SECOND = 6;
+    private static final int HAND_CENTER = 7;
+    /* A unit square, scaled to the battery level. */
+    private static final int HAND_BATTERY = 8;
+    private static final int HAND_SEGMENTS = 9;
+
+    private final float[] mProjectionMatrix = new float[16];
+    private final float[] mModelMatrix = new float[16];
+    private final float[] mMvpMatrix = new float[16];
+    private final float[] mColor = new float[4];
+    private final int[] mHandle = new int[1];
+
+    private final int[] mDialFirst = new int[DIAL_SEGMENTS];
+    private final int[] mDialCount = new int[DIAL_SEGMENTS];
+    private final int[] mHandFirst = new int[HAND_SEGMENTS];
+    private final int[] mHandCount = new int[HAND_SEGMENTS];
+
+    private int mColorProgram;
+    private int mColorPositionHandle;
+    private int mColorMvpHandle;
+    private int mColorColorHandle;
+
+    private int mTextureProgram;
+    private int mTexturePositionHandle;
+    private int mTextureCoordHandle;
+    private int mTextureMvpHandle;
+    private int mTextureColorHandle;
+    private int mTextureSamplerHandle;
+
+    private int mDialBuffer;
+    private int mHandBuffer;
+    private int mDateBuffer;
+    private int mDateTexture;
+
+    private final FaceGeometry mGeometry;
+    private final Paint mDateTextPaint;
+    private final Rect mTextBounds = new Rect();
+    private final String[] mDayOfMonthStrings;
+    private Bitmap mDateBitmap;
+    private int mDateTextureDay;
+
+    GlFaceRenderer(FaceGeometry geometry, float textSize, String[] dayOfMonthStrings) {
+        mGeometry = geometry;
+        mDayOfMonthStrings = dayOfMonthStrings;
+        mDateTextPaint = new Paint();
+        mDateTextPaint.setColor(Color.WHITE);
+        mDateTextPaint.setAntiAlias(true);
+        mDateTextPaint.setTextSize(textSize);
+        mDateTextPaint.setTextAlign(Paint.Align.CENTER);
+    }
+
+    /**
+     * Creates the shader programs. Must be called with the GL context current.
+     */
+    void onContextCreated() {
+        mColorProgram = createProgram(COLOR_VERTEX_SHADER, COLOR_FRAGMENT_SHADER);
+        mColorPositionHandle = GLES20.glGetAttribLocation(mColorProgram, "aPosition");
+        mColorMvpHandle = GLES20.glGetUniformLocation(mColorProgram, "uMvpMatrix");
+        mColorColorHandle = GLES20.glGetUniformLocation(mColorProgram, "uColor");
+
+        mTextureProgram = createProgram(TEXTURE_VERTEX_SHADER, TEXTURE_FRAGMENT_SHADER);
+        mTexturePositionHandle = GLES20.glGetAttribLocation(mTextureProgram, "aPosition");
+        mTextureCoordHandle = GLES20.glGetAttribLocation(mTextureProgram, "aTexCoord");
+        mTextureMvpHandle = GLES20.glGetUniformLocation(mTextureProgram, "uMvpMatrix");
+        mTextureColorHandle = GLES20.glGetUniformLocation(mTextureProgram, "uColor");
+        mTextureSamplerHandle = GLES20.glGetUniformLocation(mTextureProgram, "uTexture");
+
+        GLES20.glGenTextures(1, mHandle, 0);
+        mDateTexture = mHandle[0];
+        GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, mDateTexture);
+        GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MIN_FILTER,
+                GLES20.GL_LINEAR);
+        GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MAG_FILTER,
+                GLES20.GL_LINEAR);
+        GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_WRAP_S,
+                GLES20.GL_CLAMP_TO_EDGE);
+        GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_WRAP_T,
+                GLES20.GL_CLAMP_TO_EDGE);
+
+        GLES20.glEnable(GLES20.GL_BLEND);
+        GLES20.glBlendFunc(GLES20.GL_SRC_ALPHA, GLES20.GL_ONE_MINUS_SRC_ALPHA);
+    }
+
+    /**
+     * Uploads the face geometry for the current {@link FaceGeometry}. Must be called with the GL
+     * context current, after the geometry has been updated for the new surface size.
+     */
+    void onSurfaceChanged() {
+        final FaceGeometry g = mGeometry;
+        GLES20.glViewport(0, 0, g.width, g.height);
+        Matrix.orthoM(mProjectionMatrix, 0, 0, g.width, g.height, 0, -1, 1);
+
+        mDialBuffer = uploadBuffer(mDialBuffer, buildDial(g));
+        mHandBuffer = uploadBuffer(mHandBuffer, buildHands(g));
+        mDateBuffer = uploadBuffer(mDateBuffer, new float[]{
+                /* x, y, u, v as a triangle strip. */
+                g.dateTextLeft, g.dateTextTop, 0, 0,
+                g.dateTextLeft, g.dateTextBottom, 0, 1,
+                g.dateTextRight, g.dateTextTop, 1, 0,
+                g.dateTextRight, g.dateTextBottom, 1, 1,
+        });
+
+        final int width = Math.max(1, (int) Math.ceil(g.dateTextRight - g.dateTextLeft));
+        final int height = Math.max(1, (int) Math.ceil(g.dateTextBottom - g.dateTextTop));
+        mDateBitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+        mDateTextureDay = 0;
+    }
+
+    /**
+     * Draws a frame with the colours of {@code paints}, the set for the display mode, which also
+     * dims the hands in mute mode.
+     */
+    void draw(PaintSet paints, float hoursRotation, float minutesRotation, float secondsRotation,
+              float batteryPercent, int dayOfMonth, boolean ambient) {
+        final FaceGeometry g = mGeometry;
+        setColor(paints.backgroundColor);
+        GLES20.glClearColor(mColor[0], mColor[1], mColor[2], 1f);
+        GLES20.glClear(GLES20.GL_COLOR_BUFFER_BIT);
+
+        final int main = paints.main.getColor();
+        final int secondary = paints.secondary.getColor();
+
+        /* Dial. */
+        GLES20.glUseProgram(mColorProgram);
+        bindPositions(mDialBuffer);
+        GLES20.glUniformMatrix4fv(mColorMvpHandle, 1, false, mProjectionMatrix, 0);
+        drawDial(DIAL_SMALL_TICKS, GLES20.GL_LINES, paints.smallTick.getColor());
+        if (ambient) {
+            drawDial(DIAL_TWELVE_OUTLINES, GLES20.GL_LINES, main);
+            drawDial(DIAL_HOUR_TICK_OUTLINES, GLES20.GL_LINES, main);
+        } else {
+            drawDial(DIAL_TWELVE_MARKER, GLES20.GL_TRIANGLES, main);
+            drawDial(DIAL_TWELVE_HIGHLIGHT, GLES20.GL_TRIANGLES, secondary);
+            drawDial(DIAL_HOUR_TICKS, GLES20.GL_TRIANGLES, main);
+            drawDial(DIAL_HOUR_TICK_HIGHLIGHTS, GLES20.GL_TRIANGLES, secondary);
+            drawDial(DIAL_DATE_BOX, GLES20.GL_LINES, paints.dateBox.getColor());
+        }
+
+        /* Battery level, a unit square scaled to the bar. */
+        bindPositions(mHandBuffer);
+        final float barTop = g.centerY - g.outerTickRadius + g.batteryBarOffset(batteryPercent);
+        final float barBottom = g.centerY - g.innerLargeTickRadius;
+        Matrix.setIdentityM(mModelMatrix, 0);
+        Matrix.translateM(mModelMatrix, 0, g.centerX - g.largeTickWidth / 6f, barTop, 0);
+        Matrix.scaleM(mModelMatrix, 0, g.largeTickWidth / 3f, barBottom - barTop, 1);
+        setModelMatrix();
+        drawHand(HAND_BATTERY, GLES20.GL_TRIANGLES, paints.battery.getColor());
+
+        /* Hands, rotated around the face center. */
+        if (!ambient) {
+            setHandMatrix(0);
+            drawHand(HAND_CENTER, GLES20.GL_TRIANGLES, main);
+        }
+        setHandMatrix(hoursRotation);
+        if (ambient) {
+            drawHand(HAND_HOUR_OUTLINE, GLES20.GL_LINES, main);
+        } else {
+            drawHand(HAND_HOUR, GLES20.GL_TRIANGLES, main);
+            drawHand(HAND_HOUR_HIGHLIGHT, GLES20.GL_TRIANGLES, secondary);
+        }
+        setHandMatrix(minutesRotation);
+        if (ambient) {
+            drawHand(HAND_MINUTE_OUTLINE, GLES20.GL_LINES, main);
+        } else {
+            drawHand(HAND_MINUTE, GLES20.GL_TRIANGLES, main);
+            drawHand(HAND_MINUTE_HIGHLIGHT, GLES20.GL_TRIANGLES, secondary);
+            setHandMatrix(secondsRotation);
+            drawHand(HAND_SECOND, GLES20.GL_TRIANGLES, paints.second.getColor());
+        }
+        GLES20.glDisableVertexAttribArray(mColorPositionHandle);
+
+        drawDate(dayOfMonth, paints.dateText.getColor());
+    }
+
+    private void drawDate(int dayOfMonth, int color) {
+        GLES20.glUseProgram(mTextureProgram);
+        GLES20.glActiveTexture(GLES20.GL_TEXTURE0);
+        GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, mDateTexture);
+        if (dayOfMonth != mDateTextureDay) {
+            /* The date only changes once a day, so the texture is redrawn on the CPU. */
+            final String dateStr = mDayOfMonthStrings[dayOfMonth];
+            mDateTextPaint.getTextBounds(dateStr, 0, dateStr.length(), mTextBounds);
+            mDateBitmap.eraseColor(Color.TRANSPARENT);
+            new Canvas(mDateBitmap).drawText(dateStr, mDateBitmap.getWidth() / 2f,
+                    (mDateBitmap.getHeight() + mTextBounds.height()) / 2f, mDateTextPaint);
+            GLUtils.texImage2D(GLES20.GL_TEXTURE_2D, 0, mDateBitmap, 0);
+            mDateTextureDay = dayOfMonth;
+        }
+
+        GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, mDateBuffer);
+        GLES20.glEnableVertexAttribArray(mTexturePositionHandle);
+        GLES20.glVertexAttribPointer(mTexturePositionHandle, 2, GLES20.GL_FLOAT, false,
+                4 * FLOAT_BYTES, 0);
+        GLES20.glEnableVertexAttribArray(mTextureCoordHandle);
+        GLES20.glVertexAttribPointer(mTextureCoordHandle, 2, GLES20.GL_FLOAT, false,
+                4 * FLOAT_BYTES, 2 * FLOAT_BYTES);
+        GLES20.glUniformMatrix4fv(mTextureMvpHandle, 1, false, mProjectionMatrix, 0);
+        setColor(color);
+        GLES20.glUniform4fv(mTextureColorHandle, 1, mColor, 0);
+        GLES20.glUniform1i(mTextureSamplerHandle, 0);
+        GLES20.glDrawArrays(GLES20.GL_TRIANGLE_STRIP, 0, 4);
+        GLES20.glDisableVertexAttribArray(mTexturePositionHandle);
+        GLES20.glDisableVertexAttribArray(mTextureCoordHandle);
+    }
+
+    private void bindPositions(int buffer) {
+        GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, buffer);
+        GLES20.glEnableVertexAttribArray(mColorPositionHandle);
+        GLES20.glVertexAttribPointer(mColorPositionHandle, 2, GLES20.GL_FLOAT, false, 0, 0);
+    }
+
+    private void drawDial(int segment, int mode, int color) {
+        setColor(color);
+        GLES20.glUniform4fv(mColorColorHandle, 1, mColor, 0);
+        GLES20.glDrawArrays(mode, mDialFirst[segment], mDialCount[segment]);
+    }
+
+    private void drawHand(int segment, int mode, int color) {
+        setColor(color);
+        GLES20.glUniform4fv(mColorColorHandle, 1, mColor, 0);
+        GLES20.glDrawArrays(mode, mHandFirst[segment], mHandCount[segment]);
+    }
+
+    private void setHandMatrix(float rotation) {
+        Matrix.setIdentityM(mModelMatrix, 0);
+        Matrix.translateM(mModelMatrix, 0, mGeometry.centerX, mGeometry.centerY, 0);
+        Matrix.rotateM(mModelMatrix, 0, rotation, 0, 0, 1);
+        setModelMatrix();
+    }
+
+    private void setModelMatrix() {
+        Matrix.multiplyMM(mMvpMatrix, 0, mProjectionMatrix, 0, mModelMatrix, 0);
+        GLES20.glUniformMatrix4fv(mColorMvpHandle, 1, false, mMvpMatrix, 0);
+    }
+
+    private void setColor(int color) {
+        mColor[0] = Color.red(color) / 255f;
+        mColor[1] = Color.green(color) / 255f;
+        mColor[2] = Color.blue(color) / 255f;
+        mColor[3] = Color.alpha(color) / 255f;
+    }
+
+    private float[] buildDial(FaceGeometry g) {
+        final VertexList v = new VertexList(mDialFirst, mDialCount);
+        final TickMarks ticks = g.tickMarks;
+
+        v.begin(DIAL_SMALL_TICKS);
+        v.add(ticks.smallTicks);
+        v.begin(DIAL_HOUR_TICKS);
+        v.addQuadTriangles(ticks.hourTicks);
+        v.begin(DIAL_HOUR_TICK_OUTLINES);
+        v.addQuadOutlines(ticks.hourTicks);
+        v.begin(DIAL_HOUR_TICK_HIGHLIGHTS);
+        v.addQuadTriangles(ticks.hourTickHighlights);
+
+        final float top = g.centerY - g.outerTickRadius;
+        final float bottom = g.centerY - g.innerLargeTickRadius;
+        final float width = g.twelveMarkerWidth;
+        final float[] marker = rect(g.centerX - width / 2f, top, g.centerX + width / 2f, bottom);
+        v.begin(DIAL_TWELVE_MARKER);
+        v.addQuadTriangles(marker);
+        v.begin(DIAL_TWELVE_HIGHLIGHT);
+        v.addQuadTriangles(rect(g.centerX - width * 3 / 10f, top,
+                g.centerX + width * 3 / 10f, bottom));
+        v.begin(DIAL_TWELVE_OUTLINES);
+        v.addQuadOutlines(marker);
+        v.addQuadOutlines(rect(g.centerX - width / 6f, top, g.centerX + width / 6f, bottom));
+
+        v.begin(DIAL_DATE_BOX);
+        v.addQuadOutlines(rect(g.dateTextLeft, g.dateTextTop, g.dateTextRight,
+                g.dateTextBottom));
+        v.end();
+        return v.toArray();
+    }
+
+    private float[] buildHands(FaceGeometry g) {
+        final VertexList v = new VertexList(mHandFirst, mHandCount);
+
+        final float[] hour = rect(-g.hourHandWidth / 2f, -g.hourHandFrontLength,
+                g.hourHandWidth / 2f, g.hourHandBackLength);
+        v.begin(HAND_HOUR);
+        v.addQuadTriangles(hour);
+        v.begin(HAND_HOUR_HIGHLIGHT);
+        v.addQuadTriangles(rect(-g.hourHandWidth / 6f, -g.hourHandHighlightLength,
+                g.hourHandWidth / 6f, g.hourHandBackLength));
+        v.begin(HAND_HOUR_OUTLINE);
+        v.addQuadOutlines(hour);
+
+        final float[] minute = rect(-g.minuteHandWidth / 2f, -g.minuteHandFrontLength,
+                g.minuteHandWidth / 2f, g.minuteHandBackLength);
+        v.begin(HAND_MINUTE);
+        v.addQuadTriangles(minute);
+        v.begin(HAND_MINUTE_HIGHLIGHT);
+        v.addQuadTriangles(rect(-g.minuteHandWidth / 6f, -g.minuteHandHighlightLength,
+                g.minuteHandWidth / 6f, g.minuteHandBackLength));
+        v.begin(HAND_MINUTE_OUTLINE);
+        v.addQuadOutlines(minute);
+
+        v.begin(HAND_SECOND);
+        v.add(0, -g.secondHandFrontLength);
+        v.add(-g.secondHandWidth / 2f, g.secondHandBackLength);
+        v.add(g.secondHandWidth / 2f, g.secondHandBackLength);
+
+        v.begin(HAND_CENTER);
+        final float radius = g.hourHandCircle;
+        for (int i = 0; i < CIRCLE_SEGMENTS; i++) {
+            final double from = 2 * Math.PI * i / CIRCLE_SEGMENTS;
+            final double to = 2 * Math.PI * (i + 1) / CIRCLE_SEGMENTS;
+            v.add(0, 0);
+            v.add((float) Math.cos(from) * radius, (float) Math.sin(from) * radius);
+            v.add((float) Math.cos(to) * radius, (float) Math.sin(to) * radius);
+        }
+
+        v.begin(HAND_BATTERY);
+        v.addQuadTriangles(rect(0, 0, 1, 1));
+        v.end();
+        return v.toArray();
+    }
+
+    private static float[] rect(float left, float top, float right, float bottom) {
+        return new float[]{left, top, right, top, right, bottom, left, bottom};
+    }
+
+    private int uploadBuffer(int buffer, float[] data) {
+        if (buffer == 0) {
+            GLES20.glGenBuffers(1, mHandle, 0);
+            buffer = mHandle[0];
+        }
+        FloatBuffer floats = ByteBuffer.allocateDirect(data.length * FLOAT_BYTES)
+                .order(ByteOrder.nativeOrder())
+                .asFloatBuffer();
+        floats.put(data).position(0);
+        GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, buffer);
+        GLES20.glBufferData(GLES20.GL_ARRAY_BUFFER, data.length * FLOAT_BYTES, floats,
+                GLES20.GL_STATIC_DRAW);
+        return buffer;
+    }
+
+    private static int createProgram(String vertexSource, String fragmentSource) {
+        final int program = GLES20.glCreateProgram();
+        final int vertexShader = compileShader(GLES20.GL_VERTEX_SHADER, vertexSource);
+        final int fragmentShader = compileShader(GLES20.GL_FRAGMENT_SHADER, fragmentSource);
+        GLES20.glAttachShader(program, vertexShader);
+        GLES20.glAttachShader(program, fragmentShader);
+        GLES20.glLinkProgram(program);
+        final int[] status = new int[1];
+        GLES20.glGetProgramiv(program, GLES20.GL_LINK_STATUS, status, 0);
+        if (status[0] == 0) {
+            Log.e(TAG, "Could not link program: " + GLES20.glGetProgramInfoLog(program));
+        }
+        GLES20.glDeleteShader(vertexShader);
+        GLES20.glDeleteShader(fragmentShader);
+        return program;
+    }
+
+    private static int compileShader(int type, String source) {
+        final int shader = GLES20.glCreateShader(type);
+        GLES20.glShaderSource(shader, source);
+        GLES20.glCompileShader(shader);
+        final int[] status = new int[1];
+        GLES20.glGetShaderiv(shader, GLES20.GL_COMPILE_STATUS, status, 0);
+        if (status[0] == 0) {
+            Log.e(TAG, "Could not compile shader: " + GLES20.glGetShaderInfoLog(shader));
+        }
+        return shader;
+    }
+
+    /**
+     * Collects 2D vertices into named segments, recording where each segment starts and how many
+     * vertices it has.
+     */
+    private static class VertexList {
+        private final int[] mFirst;
+        private final int[] mCount;
+        private float[] mData = new float[256];
+        private int mSize;
+        private int mSegment = -1;
+
+        VertexList(int[] first, int[] count) {
+            mFirst = first;
+            mCount = count;
+        }
+
+        void begin(int segment) {
+            end();
+            mSegment = segment;
+            mFirst[segment] = mSize / 2;
+        }
+
+        void end() {
+            if (mSegment >= 0) {
+                mCount[mSegment] = mSize / 2 - mFirst[mSegment];
+            }
+        }
+
+        void add(float x, float y) {
+            if (mSize + 2 > mData.length) {
+                float[] data = new float[mData.length * 2];
+                System.arraycopy(mData, 0, data, 0, mSize);
+                mData = data;
+            }
+            mData[mSize++] = x;
+            mData[mSize++] = y;
+        }
+
+        void add(float[] points) {
+            for (int i = 0; i < points.length; i += 2) {
+                add(points[i], points[i + 1]);
+            }
+        }
+
+        /** Adds each quad of four corners as two triangles. */
+        void addQuadTriangles(float[] quads) {
+            for (int i = 0; i < quads.length; i += 8) {
+                addCorner(quads, i, 0);
+                addCorner(quads, i, 1);
+                addCorner(quads, i, 2);
+                addCorner(quads, i, 0);
+                addCorner(quads, i, 2);
+                addCorner(quads, i, 3);
+            }
+        }
+
+        /** Adds each quad of four corners as four line segments. */
+        void addQuadOutlines(float[] quads) {
+            for (int i = 0; i < quads.length; i += 8) {
+                for (int corner = 0; corner < 4; corner++) {
+                    addCorner(quads, i, corner);
+                    addCorner(quads, i, (corner + 1) % 4);
+                }
+            }
+        }
+
+        private void addCorner(float[] quads, int quad, int corner) {
+            add(quads[quad + corner * 2], quads[quad + corner * 2 + 1]);
+        }
+
+        float[] toArray() {
+            float[] data = new float[mSize];
+            System.arraycopy(mData, 0, data, 0, mSize);
+            return data;
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.cybermats.cleaner;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Matrix;
+import android.graphics.Paint;
+
+/**
+ * A hand pre-rendered into a bitmap, pointing at twelve o'clock, with its shadow baked in. Each
+ * frame the bitmap is drawn with a rotation around the face center instead of drawing the hand
+ * with a blurred shadow layer. The bitmap is shared with other engines through
+ * {@link SharedAssets}, so it is never drawn into again once stored.
+ */
+class HandSprite {
+    private final Matrix mMatrix = new Matrix();
+    private Bitmap mBitmap;
+    private float mPivotX;
+    private float mPivotY;
+
+    /**
+     * Prepares the sprite for a hand that extends {@code frontLength} above and
+     * {@code backLength} below the face center, and {@code halfWidth} to either side, with
+     * {@code padding} pixels around it for the shadow.
+     *
+     * @return a canvas translated so that the hand can be drawn at its position on the face.
+     */
+    Canvas begin(float halfWidth, float frontLength, float backLength, float padding,
+                 float centerX, float centerY) {
+        final int width = width(halfWidth, padding);
+        final int height = height(frontLength, backLength, padding);
+        /*
+         * The previous bitmap may be in use by other engines, so always start a new one. The hand
+         * and its shadow differ in colour, so unlike the dial it needs all of ARGB_8888.
+         */
+        mBitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+        mPivotX = width / 2f;
+        mPivotY = padding + frontLength;
+
+        Canvas canvas = new Canvas(mBitmap);
+        canvas.translate(mPivotX - centerX, mPivotY - centerY);
+        return canvas;
+    }
+
+    /**
+     * Returns the bytes the bitmap of a sprite described as for {@link #begin} takes.
+     */
+    static long byteCount(float halfWidth, float frontLength, float backLength, float padding) {
+        return BitmapBudget.byteCount(width(halfWidth, padding),
+                height(frontLength, backLength, padding), Bitmap.Config.ARGB_8888);
+    }
+
+    private static int width(float halfWidth, float padding) {
+        return (int) Math.ceil(2 * (halfWidth + padding));
+    }
+
+    private static int height(float frontLength, float backLength, float padding) {
+        return (int) Math.ceil(frontLength + backLength + 2 * padding);
+    }
+
+    /**
+     * Loads the sprite for the hand described as for {@link #begin} from {@code assets}, and
+     * uses it for {@code role}.
+     *
+     * @return false if it isn't cached, in which case it must be drawn after {@link #begin}.
+     */
+    boolean load(SharedAssets.Holder assets, String role, String key, float frontLength,
+                 float padding) {
+        final Bitmap bitmap = assets.acquire(role, key);
+        if (bitmap == null) {
+            return false;
+        }
+        mBitmap = bitmap;
+        mPivotX = bitmap.getWidth() / 2f;
+        mPivotY = padding + frontLength;
+        return true;
+    }
+
+    void store(SharedAssets.Holder assets, String role, String key) {
+        mBitmap = assets.add(role, key, mBitmap);
+    }
+
+    /**
+     * Draws the sprite rotated {@code rotation} degrees clockwise around the face center.
+     */
+    void draw(Canvas canvas, float centerX, float centerY, float rotation, Paint paint) {
+        mMatrix.setTranslate(centerX - mPivotX, centerY - mPivotY);
+        mMatrix.postRotate(rotation, centerX, centerY);
+        canvas.drawBitmap(mBitmap, mMatrix, paint);
+    }
+}
@@ -0,0 +1,355 @@
+package com.cybermats.cleaner;
+
+import android.content.ComponentCallbacks2;
+import android.graphics.Bitmap;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Pre-rendered assets, the dial layers and hand sprites, shared in memory by all engines in the
+ * process, e.g. the live face and a preview in the picker, or an engine and the one that replaces
+ * it. Assets are keyed by everything they are drawn from, like the disk cache behind them.
+ * <p>
+ * An asset is referenced by the engines that currently use it, through their {@link Holder}.
+ * When the last reference goes, e.g. in {@code onDestroy} or after a mode change, the asset is
+ * kept as unused, so that switching back or a new engine is nearly free. Every asset in memory,
+ * used or not, is counted once against the process' {@link BitmapBudget}. Unused assets are
+ * dropped, least recently released first, when a reservation wouldn't fit otherwise, and under
+ * memory pressure, see {@link #trimMemory}. Assets in use are never dropped.
+ * <p>
+ * The bitmaps are shared between render threads, so they must not be modified once added.
+ */
+final class SharedAssets implements BitmapBudget.Reclaimer {
+    /* Geometries for surface sizes no engine has any more, e.g. after a preview was closed. */
+    private static final int MAX_UNUSED_GEOMETRIES = 4;
+
+    private static SharedAssets sInstance;
+
+    private final AssetDiskCache mDiskCache;
+    private final int mVersion;
+    /* Assets in use, with the number of holders using them. */
+    private final Map<String, Entry> mUsed = new HashMap<>();
+    /* Assets nobody uses, least recently released first. */
+    private final LinkedHashMap<String, Bitmap> mUnused = new LinkedHashMap<>(16, 0.75f, true);
+    /* Holds every asset in memory, under its key. */
+    private final BitmapBudget mBudget = new BitmapBudget();
+    /* Assets being loaded from disk, without the lock held. */
+    private final Set<String> mLoading = new HashSet<>();
+    /* Set once replaced by the assets for another version, which nobody acquires from again. */
+    private boolean mRetired;
+
+    /*
+     * Geometry and paints are shared too; both are immutable once built. Geometries are
+     * referenced and kept when unused like the bitmaps, but only up to a count, as they are small.
+     */
+    private final Map<Long, GeometryEntry> mGeometries = new HashMap<>();
+    private final LinkedHashMap<Long, FaceGeometry> mUnusedGeometries =
+            new LinkedHashMap<Long, FaceGeometry>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Long, FaceGeometry> eldest) {
+                    return size() > MAX_UNUSED_GEOMETRIES;
+                }
+            };
+    private PaintSets mPaintSets;
+    private float mPaintSetsTextSize;
+
+    private SharedAssets(File cacheDir, int version) {
+        mDiskCache = new AssetDiskCache(cacheDir, version);
+        mVersion = version;
+        BitmapBudget.setReclaimer(this);
+    }
+
+    /**
+     * Returns the process' assets for {@code version}, see {@link AssetDiskCache}.
+     */
+    static synchronized SharedAssets get(File cacheDir, int version) {
+        if (sInstance == null || sInstance.mVersion != version) {
+            if (sInstance != null) {
+                sInstance.retire();
+            }
+            sInstance = new SharedAssets(cacheDir, version);
+        }
+        return sInstance;
+    }
+
+    /**
+     * Drops the unused assets when the system asks the process to trim its memory. Memory the
+     * face doesn't need to draw its next frame is all the process can give back.
+     */
+    static synchronized void trimMemory(int level) {
+        if (sInstance != null && level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW) {
+            synchronized (sInstance) {
+                sInstance.reclaim(Long.MAX_VALUE);
+                sInstance.mUnusedGeometries.clear();
+            }
+        }
+    }
+
+    /**
+     * Returns the geometry for a surface size, shared by all engines with that size, and takes a
+     * reference to it, to be given back with {@link #releaseGeometry}.
+     */
+    synchronized FaceGeometry acquireGeometry(int width, int height) {
+        final Long key = geometryKey(width, height);
+        final GeometryEntry used = mGeometries.get(key);
+        if (used != null) {
+            used.references++;
+            return used.geometry;
+        }
+        FaceGeometry geometry = mUnusedGeometries.remove(key);
+        if (geometry == null) {
+            geometry = new FaceGeometry();
+            geometry.update(width, height);
+        }
+        mGeometries.put(key, new GeometryEntry(geometry));
+        return geometry;
+    }
+
+    /**
+     * Gives back a reference taken with {@link #acquireGeometry}. Does nothing for any other
+     * geometry, e.g. an engine's initial empty one.
+     */
+    synchronized void releaseGeometry(FaceGeometry geometry) {
+        final Long key = geometryKey(geometry.width, geometry.height);
+        final GeometryEntry used = mGeometries.get(key);
+        if (used == null || used.geometry != geometry || --used.references > 0) {
+            return;
+        }
+        mGeometries.remove(key);
+        mUnusedGeometries.put(key, geometry);
+    }
+
+    private static Long geometryKey(int width, int height) {
+        return ((long) width << 32) | (height & 0xffffffffL);
+    }
+
+    /**
+     * Returns the paints for {@code theme}, shared by all engines with the same theme.
+     */
+    synchronized PaintSets getPaintSets(FaceTheme theme, float textSize, float shadowRadius) {
+        if (mPaintSets == null || !mPaintSets.theme.equals(theme)
+                || mPaintSetsTextSize != textSize) {
+            mPaintSets = new PaintSets(theme, textSize, shadowRadius);
+            mPaintSetsTextSize = textSize;
+        }
+        return mPaintSets;
+    }
+
+    /**
+     * Drops unused assets, least recently released first, until at least {@code bytes} are
+     * released.
+     */
+    @Override
+    public synchronized void reclaim(long bytes) {
+        final Iterator<Map.Entry<String, Bitmap>> iterator = mUnused.entrySet().iterator();
+        long reclaimedBytes = 0;
+        while (reclaimedBytes < bytes && iterator.hasNext()) {
+            final Map.Entry<String, Bitmap> unused = iterator.next();
+            reclaimedBytes += unused.getValue().getByteCount();
+            mBudget.release(unused.getKey());
+            iterator.remove();
+        }
+    }
+
+    private synchronized void retire() {
+        mRetired = true;
+        reclaim(Long.MAX_VALUE);
+    }
+
+    /*
+     * Loads an asset from disk without the lock, so that one engine's cold start doesn't hold up
+     * the others' frames. The key is reserved meanwhile, and an engine that wants the same asset
+     * waits for it rather than loading it again.
+     */
+    private Bitmap acquire(String key) {
+        synchronized (this) {
+            while (true) {
+                final Bitmap bitmap = acquireInMemory(key);
+                if (bitmap != null) {
+                    return bitmap;
+                }
+                if (!mLoading.contains(key)) {
+                    break;
+                }
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return null;
+                }
+            }
+            mLoading.add(key);
+        }
+
+        /* Reserves the asset's memory before loading it, or doesn't load it. */
+        final BitmapBudget loading = new BitmapBudget();
+        Bitmap loaded = null;
+        try {
+            loaded = mDiskCache.load(key, loading);
+        } finally {
+            synchronized (this) {
+                mLoading.remove(key);
+                notifyAll();
+                if (loaded != null) {
+                    /* An engine may have drawn and added the asset meanwhile, use that one. */
+                    final Bitmap existing = acquireInMemory(key);
+                    if (existing != null) {
+                        loaded = existing;
+                    } else {
+                        mBudget.reserveRequired(key, loaded.getByteCount());
+                        mUsed.put(key, new Entry(loaded));
+                    }
+                }
+                loading.releaseAll();
+            }
+        }
+        return loaded;
+    }
+
+    /* Takes a reference to an asset that is in memory, used or not, without the disk cache. */
+    private Bitmap acquireInMemory(String key) {
+        final Entry used = mUsed.get(key);
+        if (used != null) {
+            used.references++;
+            return used.bitmap;
+        }
+        final Bitmap bitmap = mUnused.remove(key);
+        if (bitmap != null) {
+            mUsed.put(key, new Entry(bitmap));
+        }
+        return bitmap;
+    }
+
+    /* The asset a holder already uses for a role, without another reference. */
+    private synchronized Bitmap acquireHeld(String key) {
+        final Entry used = mUsed.get(key);
+        return used != null ? used.bitmap : null;
+    }
+
+    private synchronized Bitmap add(String key, Bitmap bitmap) {
+        /*
+         * Another engine may have drawn the same asset meanwhile, use the first one. The caller
+         * already missed the disk cache, so it isn't read again.
+         */
+        final Bitmap existing = acquireInMemory(key);
+        if (existing != null) {
+            return existing;
+        }
+        mBudget.reserveRequired(key, bitmap.getByteCount());
+        mUsed.put(key, new Entry(bitmap));
+        mDiskCache.store(key, bitmap);
+        return bitmap;
+    }
+
+    private synchronized void release(String key) {
+        final Entry used = mUsed.get(key);
+        if (used == null || --used.references > 0) {
+            return;
+        }
+        mUsed.remove(key);
+        if (mRetired) {
+            mBudget.release(key);
+            return;
+        }
+        mUnused.put(key, used.bitmap);
+        /* Reservations made whatever the budget may have left the process over it. */
+        final long overBytes = BitmapBudget.getHeldBytes() - BitmapBudget.getBudgetBytes();
+        if (overBytes > 0) {
+            reclaim(overBytes);
+        }
+    }
+
+    private static final class GeometryEntry {
+        final FaceGeometry geometry;
+        int references = 1;
+
+        GeometryEntry(FaceGeometry geometry) {
+            this.geometry = geometry;
+        }
+    }
+
+    private static final class Entry {
+        final Bitmap bitmap;
+        int references = 1;
+
+        Entry(Bitmap bitmap) {
+            this.bitmap = bitmap;
+        }
+    }
+
+    /**
+     * The assets one engine uses, by role, e.g. the dial or the hour hand. Using a new asset for
+     * a role releases the one it had. Only used on the engine's render thread.
+     */
+    static final class Holder {
+        private final SharedAssets mAssets;
+        private final Map<String, String> mKeys = new HashMap<>();
+
+        Holder(SharedAssets assets) {
+            mAssets = assets;
+        }
+
+        /**
+         * Returns the asset stored for {@code key}, in memory or on disk, and uses it for
+         * {@code role}. An asset on disk is only loaded if it fits in the budget.
+         *
+         * @return the asset, or null if it must be drawn and added with {@link #add}, if
+         * {@link BitmapBudget#fits} its size.
+         */
+        Bitmap acquire(String role, String key) {
+            if (key.equals(mKeys.get(role))) {
+                return mAssets.acquireHeld(key);
+            }
+            final Bitmap bitmap = mAssets.acquire(key);
+            if (bitmap != null) {
+                use(role, key);
+            }
+            return bitmap;
+        }
+
+        /**
+         * Adds a newly drawn asset and uses it for {@code role}, and counts it against the budget.
+         * The bitmap must not be modified afterwards.
+         *
+         * @return the shared asset, which is another bitmap if an engine added one first.
+         */
+        Bitmap add(String role, String key, Bitmap bitmap) {
+            final Bitmap shared = mAssets.add(key, bitmap);
+            use(role, key);
+            return shared;
+        }
+
+        /**
+         * Releases the asset used for {@code role}, if any.
+         */
+        void release(String role) {
+            final String key = mKeys.remove(role);
+            if (key != null) {
+                mAssets.release(key);
+            }
+        }
+
+        /**
+         * Releases all assets, when the engine is destroyed.
+         */
+        void releaseAll() {
+            for (String key : mKeys.values()) {
+                mAssets.release(key);
+            }
+            mKeys.clear();
+        }
+
+        private void use(String role, String key) {
+            final String previous = mKeys.put(role, key);
+            if (previous != null) {
+                mAssets.release(previous);
+            }
+        }
+    }
+}
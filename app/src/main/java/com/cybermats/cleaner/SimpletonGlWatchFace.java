@@ -0,0 +1,355 @@
+package com.cybermats.cleaner;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.content.SharedPreferences;
+import android.os.BatteryManager;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Message;
+import android.util.Log;
+import android.support.wearable.watchface.Gles2WatchFaceService;
+import android.support.wearable.watchface.WatchFaceService;
+import android.support.wearable.watchface.WatchFaceStyle;
+import android.view.Gravity;
+import android.view.SurfaceHolder;
+import android.view.WindowManager;
+
+import java.lang.ref.WeakReference;
+import java.util.Locale;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The same face as {@link SimpletonWatchFace}, rendered with OpenGL ES 2.0 instead of a software
+ * canvas. It shares {@link FaceGeometry}, {@link TimeModel} and {@link FrameRateGovernor} with
+ * the Canvas engine, and is offered as a separate watch face in the picker.
+ */
+public class SimpletonGlWatchFace extends Gles2WatchFaceService {
+    private static final String TAG = "SimpletonGlWatchFace";
+
+    /*
+     * Update rate for a smooth sweep. The GPU path can afford twice the rate of the Canvas engine.
+     */
+    private static final long SMOOTH_UPDATE_RATE_MS = TimeUnit.MILLISECONDS.toMillis(16);
+
+    /**
+     * Handler message id for updating the time periodically in interactive mode.
+     */
+    private static final int MSG_UPDATE_TIME = 0;
+
+    /**
+     * Handler message id for redrawing once after the face inputs changed visibly.
+     */
+    private static final int MSG_INPUTS_CHANGED = 1;
+
+    @Override
+    public Engine onCreateEngine() {
+        return new Engine();
+    }
+
+    private static class EngineHandler extends Handler {
+        private final WeakReference<SimpletonGlWatchFace.Engine> mWeakReference;
+
+        EngineHandler(SimpletonGlWatchFace.Engine reference) {
+            mWeakReference = new WeakReference<>(reference);
+        }
+
+        @Override
+        public void handleMessage(Message msg) {
+            SimpletonGlWatchFace.Engine engine = mWeakReference.get();
+            if (engine != null) {
+                switch (msg.what) {
+                    case MSG_UPDATE_TIME:
+                        engine.handleUpdateTimeMessage();
+                        break;
+                    case MSG_INPUTS_CHANGED:
+                        engine.invalidate();
+                        break;
+                }
+            }
+        }
+    }
+
+    private class Engine extends Gles2WatchFaceService.Engine
+            implements FrameScheduler.Callback {
+        private final Handler mUpdateTimeHandler = new EngineHandler(this);
+        private final FrameRateGovernor mFrameRateGovernor =
+                new FrameRateGovernor(SMOOTH_UPDATE_RATE_MS);
+        private final FaceGeometry mGeometry = new FaceGeometry();
+        private TimeModel mTimeModel;
+        private GlFaceRenderer mRenderer;
+        private final FrameStats mFrameStats = new FrameStats();
+        /* Wall clock time the next timer update is due, or 0 if it is not known. */
+        private long mNextUpdateTimeMs;
+        /* Paces interactive frames on vsync from API 16, see handleUpdateTimeMessage(). */
+        private FrameScheduler mFrameScheduler;
+        /* Wall clock time the next frame is expected to be shown at, or 0 to use the time now. */
+        private long mFrameTimeMs;
+
+        private final BroadcastReceiver mTimeZoneReceiver = new BroadcastReceiver() {
+            @Override
+            public void onReceive(Context context, Intent intent) {
+                if (FaceInputs.setTimeZone(mTimeModel, TimeZone.getDefault(),
+                        System.currentTimeMillis())) {
+                    requestRedraw();
+                }
+            }
+        };
+        private final BroadcastReceiver mBatteryLevelReceiver = new BroadcastReceiver() {
+            @Override
+            public void onReceive(Context context, Intent intent) {
+                int level = intent.getIntExtra(BatteryManager.EXTRA_LEVEL, -1);
+                int scale = intent.getIntExtra(BatteryManager.EXTRA_SCALE, -1);
+                if (mInputs.setBatteryPercent(scale != 0 ? level / (float) scale : 0)) {
+                    requestRedraw();
+                }
+            }
+        };
+        private boolean mRegisteredReceiver = false;
+        private boolean mAmbient;
+        /* Battery level and mute mode, quantized to what the face shows. */
+        private final FaceInputs mInputs = new FaceInputs();
+        /* The paints for every mode from the selected theme, of which only the colours are used. */
+        private PaintSets mPaintSets;
+        private final SharedPreferences.OnSharedPreferenceChangeListener mThemeListener =
+                new SharedPreferences.OnSharedPreferenceChangeListener() {
+                    @Override
+                    public void onSharedPreferenceChanged(SharedPreferences preferences,
+                                                          String key) {
+                        if (ThemeSettings.KEY_THEME.equals(key)) {
+                            loadTheme();
+                            requestRedraw();
+                        }
+                    }
+                };
+
+        @Override
+        public void onCreate(SurfaceHolder holder) {
+            super.onCreate(holder);
+
+            setWatchFaceStyle(new WatchFaceStyle.Builder(SimpletonGlWatchFace.this)
+                    .setAcceptsTapEvents(false)
+                    .setStatusBarGravity(Gravity.CENTER_HORIZONTAL | Gravity.CENTER_VERTICAL)
+                    .build());
+
+            mTimeModel = new TimeModel(TimeZone.getDefault());
+
+            String[] dayOfMonthStrings = new String[32];
+            for (int day = 1; day < dayOfMonthStrings.length; day++) {
+                dayOfMonthStrings[day] = String.format(Locale.getDefault(), "%d", day);
+            }
+            mRenderer = new GlFaceRenderer(mGeometry,
+                    getResources().getDimensionPixelSize(R.dimen.fontsize), dayOfMonthStrings);
+            loadTheme();
+            ThemeSettings.getPreferences(SimpletonGlWatchFace.this)
+                    .registerOnSharedPreferenceChangeListener(mThemeListener);
+        }
+
+        /**
+         * Builds the paints for every mode from the selected theme, the same ones the Canvas
+         * engine draws with. Shadows are not drawn on this path, so they get none.
+         */
+        private void loadTheme() {
+            mPaintSets = new PaintSets(ThemeSettings.loadSelected(SimpletonGlWatchFace.this),
+                    getResources().getDimensionPixelSize(R.dimen.fontsize), 0);
+        }
+
+        @Override
+        public void onDestroy() {
+            ThemeSettings.getPreferences(SimpletonGlWatchFace.this)
+                    .unregisterOnSharedPreferenceChangeListener(mThemeListener);
+            mUpdateTimeHandler.removeMessages(MSG_UPDATE_TIME);
+            mUpdateTimeHandler.removeMessages(MSG_INPUTS_CHANGED);
+            if (mFrameScheduler != null) {
+                mFrameScheduler.stop();
+            }
+            super.onDestroy();
+        }
+
+        @Override
+        public void onGlContextCreated() {
+            super.onGlContextCreated();
+            mRenderer.onContextCreated();
+        }
+
+        @Override
+        public void onGlSurfaceCreated(int width, int height) {
+            super.onGlSurfaceCreated(width, height);
+            mGeometry.update(width, height);
+            mInputs.setBatteryBarHeight(mGeometry.batteryBarHeight());
+            mFrameRateGovernor.setSecondHand(mGeometry.secondHandFrontLength,
+                    getResources().getDimension(R.dimen.sweep_min_step));
+            mRenderer.onSurfaceChanged();
+        }
+
+        @Override
+        public void onTimeTick() {
+            super.onTimeTick();
+            invalidate();
+        }
+
+        @Override
+        public void onAmbientModeChanged(boolean inAmbientMode) {
+            super.onAmbientModeChanged(inAmbientMode);
+            mAmbient = inAmbientMode;
+            invalidate();
+            updateTimer();
+        }
+
+        @Override
+        public void onInterruptionFilterChanged(int interruptionFilter) {
+            super.onInterruptionFilterChanged(interruptionFilter);
+            boolean inMuteMode = (interruptionFilter == WatchFaceService.INTERRUPTION_FILTER_NONE);
+            if (mInputs.setMuteMode(inMuteMode)) {
+                requestRedraw();
+            }
+        }
+
+        @Override
+        public void onDraw() {
+            super.onDraw();
+            final long startNanos = System.nanoTime();
+            mTimeModel.setTime(mFrameTimeMs != 0 ? mFrameTimeMs : System.currentTimeMillis());
+            mFrameTimeMs = 0;
+            /* This engine doesn't read the low-bit and burn-in properties. */
+            mRenderer.draw(mPaintSets.get(mAmbient, false, false, mInputs.isMuteMode()),
+                    mTimeModel.getHoursRotation(), mTimeModel.getMinutesRotation(),
+                    mTimeModel.getSecondsRotation(mFrameRateGovernor.isTicking()),
+                    mInputs.getDisplayedBatteryPercent(), mTimeModel.getDayOfMonth(), mAmbient);
+            if (BuildConfig.FRAME_STATS) {
+                /* GL calls are asynchronous, so this is the CPU time to issue the frame. */
+                mFrameStats.recordDraw(System.nanoTime() - startNanos);
+            }
+        }
+
+        @Override
+        public void onVisibilityChanged(boolean visible) {
+            super.onVisibilityChanged(visible);
+
+            if (visible) {
+                registerReceiver();
+                /* Update time zone in case it changed while we weren't visible. */
+                mTimeModel.setTimeZone(TimeZone.getDefault());
+                invalidate();
+            } else {
+                unregisterReceiver();
+                if (BuildConfig.FRAME_STATS) {
+                    Log.d(TAG, "Frame stats: " + mFrameStats);
+                }
+            }
+
+            updateTimer();
+        }
+
+        private void registerReceiver() {
+            if (mRegisteredReceiver) {
+                return;
+            }
+            mRegisteredReceiver = true;
+            IntentFilter filter = new IntentFilter(Intent.ACTION_TIMEZONE_CHANGED);
+            SimpletonGlWatchFace.this.registerReceiver(mTimeZoneReceiver, filter);
+            IntentFilter ifilter = new IntentFilter(Intent.ACTION_BATTERY_CHANGED);
+            SimpletonGlWatchFace.this.registerReceiver(mBatteryLevelReceiver, ifilter);
+        }
+
+        private void unregisterReceiver() {
+            if (!mRegisteredReceiver) {
+                return;
+            }
+            mRegisteredReceiver = false;
+            SimpletonGlWatchFace.this.unregisterReceiver(mTimeZoneReceiver);
+            SimpletonGlWatchFace.this.unregisterReceiver(mBatteryLevelReceiver);
+        }
+
+        /**
+         * Redraws the face after an input changed visibly. While the timer is running the next
+         * timer update draws the change; otherwise changes that arrive together are batched into a
+         * single frame.
+         */
+        private void requestRedraw() {
+            if (shouldTimerBeRunning()) {
+                return;
+            }
+            if (!mUpdateTimeHandler.hasMessages(MSG_INPUTS_CHANGED)) {
+                mUpdateTimeHandler.sendEmptyMessage(MSG_INPUTS_CHANGED);
+            }
+        }
+
+        /**
+         * Starts/stops the {@link #mUpdateTimeHandler} timer based on the state of the watch face.
+         */
+        private void updateTimer() {
+            mUpdateTimeHandler.removeMessages(MSG_UPDATE_TIME);
+            mNextUpdateTimeMs = 0;
+            if (shouldTimerBeRunning()) {
+                mUpdateTimeHandler.sendEmptyMessage(MSG_UPDATE_TIME);
+            }
+        }
+
+        private boolean shouldTimerBeRunning() {
+            return isVisible() && !mAmbient;
+        }
+
+        /**
+         * Handle updating the time periodically in interactive mode, at the rate picked by
+         * {@link #mFrameRateGovernor}. From API 16 this hands over to {@link #mFrameScheduler},
+         * which asks for frames in {@link #onFrame}.
+         */
+        private void handleUpdateTimeMessage() {
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+                if (mFrameScheduler == null) {
+                    final float refreshRate = ((WindowManager) getSystemService(WINDOW_SERVICE))
+                            .getDefaultDisplay().getRefreshRate();
+                    mFrameScheduler = new FrameScheduler(refreshRate, this);
+                }
+                mFrameScheduler.start();
+                return;
+            }
+
+            long updateRateMs = mFrameRateGovernor.getUpdateRateMs();
+            if (BuildConfig.FRAME_STATS && mNextUpdateTimeMs != 0) {
+                mFrameStats.recordUpdate(System.currentTimeMillis() - mNextUpdateTimeMs,
+                        updateRateMs);
+            }
+
+            mFrameRateGovernor.update(mInputs.getBatteryPercent(), mInputs.isMuteMode(),
+                    isVisible());
+            invalidate();
+            if (shouldTimerBeRunning()) {
+                updateRateMs = mFrameRateGovernor.getUpdateRateMs();
+                long timeMs = System.currentTimeMillis();
+                long delayMs = updateRateMs - (timeMs % updateRateMs);
+                mNextUpdateTimeMs = timeMs + delayMs;
+                mUpdateTimeHandler.sendEmptyMessageDelayed(MSG_UPDATE_TIME, delayMs);
+            }
+        }
+
+        /**
+         * Requests an interactive frame on vsync, drawn for the time it will be presented at.
+         */
+        @Override
+        public long onFrame(long presentationTimeMs, long latenessNanos) {
+            if (!shouldTimerBeRunning()) {
+                return 0;
+            }
+            if (BuildConfig.FRAME_STATS) {
+                mFrameStats.recordFrameLateness(latenessNanos,
+                        mFrameScheduler.getFrameIntervalNanos());
+            }
+            mFrameRateGovernor.update(mInputs.getBatteryPercent(), mInputs.isMuteMode(),
+                    isVisible());
+            /*
+             * invalidate() draws on the next vsync's frame callback, not this one, so the frame is
+             * shown one interval after the time the scheduler expects.
+             */
+            mFrameTimeMs = presentationTimeMs
+                    + TimeUnit.NANOSECONDS.toMillis(mFrameScheduler.getFrameIntervalNanos());
+            invalidate();
+            mFrameScheduler.setUpdateRateIsMinimum(mFrameRateGovernor.isMotionPaced());
+            return mFrameRateGovernor.getUpdateRateMs();
+        }
+    }
+}
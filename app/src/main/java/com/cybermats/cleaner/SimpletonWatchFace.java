@@ -1,28 +1,39 @@
 package com.cybermats.cleaner;
 
+import android.app.PendingIntent;
 import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.Intent;
 import android.content.IntentFilter;
+import android.content.SharedPreferences;
+import android.graphics.Bitmap;
 import android.graphics.Canvas;
 import android.graphics.Color;
 import android.graphics.Paint;
-import android.graphics.Path;
 import android.graphics.Rect;
 import android.graphics.RectF;
 import android.os.BatteryManager;
+import android.os.Build;
 import android.os.Bundle;
 import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
 import android.os.Message;
+import android.os.Process;
+import android.support.wearable.complications.ComplicationData;
+import android.support.wearable.complications.SystemProviders;
+import android.util.Log;
 import android.support.wearable.watchface.CanvasWatchFaceService;
 import android.support.wearable.watchface.WatchFaceService;
 import android.support.wearable.watchface.WatchFaceStyle;
 import android.view.Gravity;
 import android.view.SurfaceHolder;
-import android.widget.Toast;
+import android.view.WindowManager;
 
+import java.io.File;
+import java.io.IOException;
 import java.lang.ref.WeakReference;
-import java.util.Calendar;
+import java.util.Arrays;
 import java.util.Locale;
 import java.util.TimeZone;
 import java.util.concurrent.TimeUnit;
@@ -41,28 +52,80 @@ import java.util.concurrent.TimeUnit;
  * https://codelabs.developers.google.com/codelabs/watchface/index.html#0
  */
 public class SimpletonWatchFace extends CanvasWatchFaceService {
-
-    /*
-     * Updates rate in milliseconds for interactive mode. We update once a second to advance the
-     * second hand.
-     */
-    private static final long INTERACTIVE_UPDATE_RATE_MS = //TimeUnit.SECONDS.toMillis(1);
-            TimeUnit.MILLISECONDS.toMillis(33);
+    private static final String TAG = "SimpletonWatchFace";
+    /* Time to first frame, logged in every build; see measure-first-frame.sh. */
+    private static final String STARTUP_TAG = "SimpletonStartup";
 
     /**
      * Handler message id for updating the time periodically in interactive mode.
      */
     private static final int MSG_UPDATE_TIME = 0;
 
+    /**
+     * Handler message id for drawing a single full frame outside the timer, e.g. after the face
+     * inputs changed visibly.
+     */
+    private static final int MSG_DRAW_FRAME = 1;
+
+    /**
+     * Handler message id for rendering the next minute's ambient frame ahead of time.
+     */
+    private static final int MSG_PREPARE_AMBIENT_FRAME = 2;
+
+    /**
+     * Handler message id for the render thread's share of the initialization that is left until
+     * the first frame has been drawn.
+     */
+    private static final int MSG_INITIALIZE_DEFERRED = 3;
+
+    /**
+     * Handler message id for stopping the vsync frames of {@link FrameScheduler}, which may only
+     * be touched on the render thread.
+     */
+    private static final int MSG_STOP_FRAMES = 4;
+
+    /**
+     * Handler message id for stopping the render thread when the engine is destroyed, after its
+     * vsync frames.
+     */
+    private static final int MSG_QUIT = 5;
+
+    private static final long MILLIS_PER_MINUTE = TimeUnit.MINUTES.toMillis(1);
+
+    /*
+     * Builds with BuildConfig.INPUT_TRACE record the engine's inputs to TRACE_FILE in the app's
+     * files directory whenever the face is hidden. A trace copied to REPLAY_FILE is replayed, and
+     * then deleted, by the next engine that is created. See TraceReplayer.
+     */
+    private static final String TRACE_FILE = "input-trace.bin";
+    private static final String REPLAY_FILE = "replay-trace.bin";
+    /* Records kept, about four minutes of interactive frames at 60 fps. */
+    private static final int TRACE_CAPACITY = 16384;
+
+    /* Complication ids, which double as indices into the per-slot arrays. */
+    private static final int LEFT_COMPLICATION_ID = 0;
+    private static final int BOTTOM_COMPLICATION_ID = 1;
+    private static final int[] COMPLICATION_IDS = {LEFT_COMPLICATION_ID, BOTTOM_COMPLICATION_ID};
+
+    /* The roles the hand sprites are held under in SharedAssets. */
+    private static final String[] SPRITE_ROLES = {"center", "hour", "minute", "second"};
+
     @Override
     public Engine onCreateEngine() {
-        return new Engine();
+        return new Engine(System.nanoTime());
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+        SharedAssets.trimMemory(level);
     }
 
     private static class EngineHandler extends Handler {
         private final WeakReference<SimpletonWatchFace.Engine> mWeakReference;
 
-        EngineHandler(SimpletonWatchFace.Engine reference) {
+        EngineHandler(SimpletonWatchFace.Engine reference, Looper looper) {
+            super(looper);
             mWeakReference = new WeakReference<>(reference);
         }
 
@@ -74,253 +137,673 @@ public class SimpletonWatchFace extends CanvasWatchFaceService {
                     case MSG_UPDATE_TIME:
                         engine.handleUpdateTimeMessage();
                         break;
+                    case MSG_DRAW_FRAME:
+                        engine.drawFrame(false, engine.mClock.currentTimeMillis());
+                        break;
+                    case MSG_PREPARE_AMBIENT_FRAME:
+                        engine.prepareAmbientFrame();
+                        break;
+                    case MSG_INITIALIZE_DEFERRED:
+                        engine.initializeDeferredResources();
+                        break;
+                    case MSG_STOP_FRAMES:
+                        engine.stopFrameScheduler();
+                        break;
+                    case MSG_QUIT:
+                        engine.stopFrameScheduler();
+                        break;
                 }
             }
+            if (msg.what == MSG_QUIT) {
+                getLooper().quit();
+            }
         }
     }
 
-    private class Engine extends CanvasWatchFaceService.Engine {
-        private static final float FACE_DIAMETER = 29f;
-        private static final float FACE_RADIUS = FACE_DIAMETER / 2f;
-        private static final float OUTER_TICK_RADIUS = FACE_RADIUS - 1f;
-        private static final float INNER_SMALL_TICK_RADIUS = OUTER_TICK_RADIUS - 1f;
-        private static final float INNER_LARGE_TICK_RADIUS = OUTER_TICK_RADIUS - 4f;
-        private static final float LARGE_TICK_WIDTH = 0.5f;
-
-        private static final float SECOND_BACK_RADIUS = 2.5f;
-        private static final float SECOND_FRONT_RADIUS = 13f;
-        private static final float SECOND_WIDTH = 0.5f;
-        private static final float MINUTE_BACK_RADIUS = 2.5f;
-        private static final float MINUTE_FRONT_RADIUS = 12f;
-        private static final float MINUTE_HIGHLIGHT_RADIUS = 6f;
-        private static final float MINUTE_WIDTH = .5f;
-        private static final float HOUR_BACK_RADIUS = 2.5f;
-        private static final float HOUR_FRONT_RADIUS = 8f;
-        private static final float HOUR_HIGHLIGHT_RADIUS = 4f;
-        private static final float HOUR_WIDTH = .5f;
-        private static final float HOUR_CIRCLE = 1f;
-
-        private static final float DATE_TEXT_LEFT = 8.5f;
-        private static final float DATE_TEXT_WIDTH = 4f;
-        private static final float DATE_TEXT_HEIGHT = 3f;
-
+    private class Engine extends CanvasWatchFaceService.Engine
+            implements FrameScheduler.Callback, TraceReplayer.Target {
         private static final int SHADOW_RADIUS = 6;
 
+        /* How far, in pixels, a shadow with SHADOW_RADIUS visibly spreads around a shape. */
+        private static final float SHADOW_EXTENT = 2f * SHADOW_RADIUS;
+
+        /*
+         * Extra margin, in pixels, around a hand's bounds when computing the region to repaint, to
+         * cover the anti-aliased edge and the stroke of the second hand.
+         */
+        private static final float HAND_BOUNDS_MARGIN = 2f;
+
+        /*
+         * A hand is only repainted in a partial redraw once its tip has moved at least this many
+         * pixels since it was last drawn.
+         */
+        private static final float MIN_HAND_STEP_PX = 0.25f;
+
+        /* Bump when the way the dial or the hands are drawn changes, to drop cached assets. */
+        private static final int ASSET_VERSION = 5;
+
+
+        /*
+         * Drawing happens on a render thread so that slow callbacks and broadcast receivers on
+         * the main thread don't delay frames. The main thread only publishes FaceState snapshots
+         * into mState. The time models, paints, bitmaps and sprites used for drawing belong to the
+         * render thread and are guarded by mSurfaceLock, which the main thread only takes briefly,
+         * for surface changes and teardown.
+         *
+         * The render thread draws into mFrameBitmap and copies what changed to the surface, with
+         * mSurfaceLock held while it locks the surface. The framework calls onDraw with the
+         * surface locked, so onDraw must never wait for mSurfaceLock. It only takes mFrameLock,
+         * which the render thread never holds while it locks the surface, to copy the last frame.
+         */
+        private HandlerThread mRenderThread;
+        /* Handler on the render thread, which also updates the time in interactive mode. */
+        private Handler mUpdateTimeHandler;
+        private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+        private volatile FaceState mState;
+
+        /* State kept by the main thread to build the snapshots from. */
+        private FaceGeometry mSurfaceGeometry = new FaceGeometry();
+        private TimeModel mInputTimeModel;
+        private boolean mShowFrameStats;
+        private boolean mAmbient;
+        private boolean mVisible;
+        private boolean mLowBitAmbient;
+        private boolean mBurnInProtection;
+        private PaintSets mPaintSets;
+
+        private final Object mSurfaceLock = new Object();
+        private boolean mSurfaceReady;
+        private final Object mFrameLock = new Object();
+        /* The last frame drawn on the render thread, guarded by mFrameLock. */
+        private Bitmap mFrameBitmap;
+        private final Canvas mFrameCanvas = new Canvas();
+        /* The snapshot the current frame is drawn from. */
+        private FaceState mFrame;
+        private FaceGeometry mGeometry;
+
+        /*
+         * Picks the interactive update rate from battery, mute and visibility, and the second
+         * hand's length. Only used on the render thread.
+         */
+        private final FrameRateGovernor mFrameRateGovernor = new FrameRateGovernor();
+        private float mSweepMinStepPx;
+        /*
+         * Paces interactive frames on vsync from API 16, created on the render thread when the
+         * timer first starts. Older devices use the MSG_UPDATE_TIME loop.
+         */
+        private FrameScheduler mFrameScheduler;
+        private float mRefreshRate;
 
-        /* Handler to update the time once a second in interactive mode. */
-        private final Handler mUpdateTimeHandler = new EngineHandler(this);
-        private Calendar mCalendar;
+        /*
+         * Frame timing, recorded in builds with BuildConfig.FRAME_STATS and shown in an overlay
+         * that is toggled by tapping the face.
+         */
+        private final FrameStats mFrameStats = new FrameStats();
+        private final char[] mFrameStatsText = new char[64];
+        private Paint mFrameStatsPaint;
+        /* Wall clock time the next timer update is due, or 0 if it is not known. */
+        private volatile long mNextUpdateTimeMs;
+        private TimeModel mTimeModel;
         private final BroadcastReceiver mTimeZoneReceiver = new BroadcastReceiver() {
             @Override
             public void onReceive(Context context, Intent intent) {
-                mCalendar.setTimeZone(TimeZone.getDefault());
-                invalidate();
+                if (mReplayer == null) {
+                    handleTimeZoneChanged(TimeZone.getDefault());
+                }
             }
         };
         private final BroadcastReceiver mBatteryLevelReceiver = new BroadcastReceiver() {
             @Override
             public void onReceive(Context context, Intent intent) {
-                int level = intent.getIntExtra(BatteryManager.EXTRA_LEVEL, -1);
-                int scale = intent.getIntExtra(BatteryManager.EXTRA_SCALE, -1);
-                if (scale != 0) {
-                    mBatteryPercent = level / (float)scale;
-                } else {
-                    mBatteryPercent = 0;
+                if (mReplayer == null) {
+                    handleBatteryChanged(getBatteryPercent(intent));
                 }
-                invalidate();
             }
         };
         private boolean mRegisteredReceiver = false;
-        private boolean mMuteMode;
-        private float mBatteryPercent;
-        private float mCenterX;
-        private float mCenterY;
-
-        private float mOuterTickRadius;
-        private float mInnerSmallTickRadius;
-        private float mInnerLargeTickRadius;
-        private float mLargeTickWidth;
-        private float mSecondHandFrontLength;
-        private float mSecondHandBackLength;
-        private float mSecondHandWidth;
-        private float mMinuteHandFrontLength;
-        private float mMinuteHandBackLength;
-        private float mMinuteHandHighlightLength;
-        private float mMinuteHandWidth;
-        private float mHourHandFrontLength;
-        private float mHourHandBackLength;
-        private float mHourHandHighlightLength;
-        private float mHourHandWidth;
-        private float mHourHandCircle;
-
-        private RectF mDateTextRect;
-
-        /* Colors for all hands (hour, minute, seconds, ticks) based on photo loaded. */
-
-        private int mWatchTickColor;
-        private int mWatchBackgroundColor;
-        private int mWatchMainColor;
-        private int mWatchSecondaryColor;
-        private int mWatchHandShadowColor;
-        private int mWatchSecondColor;
-        private int mWatchDateTextColor;
-        private int mWatchDateBoxColor;
-        private int mWatchBatteryColor;
-
-        private Paint mMainPaint;
-        private Paint mSecondaryPaint;
-        private Paint mSecondPaint;
-        private Paint mBackgroundPaint;
-        private Paint mSmallTickPaint;
-        private Paint mDateTextPaint;
-        private Paint mDateBoxPaint;
-        private Paint mBatteryPaint;
-        private boolean mAmbient;
+        /*
+         * Whether the main thread's share of the deferred initialization has run, see
+         * initializeDeferred(). The receivers are only registered from then on.
+         */
+        private boolean mDeferredInitDone;
+        private final Runnable mDeferredInit = new Runnable() {
+            @Override
+            public void run() {
+                initializeDeferred();
+            }
+        };
+        /* Builds new paint sets when the user picks another theme. */
+        private final SharedPreferences.OnSharedPreferenceChangeListener mThemeListener =
+                new SharedPreferences.OnSharedPreferenceChangeListener() {
+                    @Override
+                    public void onSharedPreferenceChanged(SharedPreferences preferences,
+                                                          String key) {
+                        if (ThemeSettings.KEY_THEME.equals(key)) {
+                            loadTheme();
+                            requestRedraw();
+                        }
+                    }
+                };
+        /* Battery level and mute mode, quantized to what the face shows. */
+        private final FaceInputs mInputs = new FaceInputs();
+
+        /*
+         * The clock frames are drawn for, and while a trace is replayed the replayer, which also
+         * stands in for the framework's callbacks and the engine's timer. mInputTrace records
+         * the inputs in builds with BuildConfig.INPUT_TRACE, but not while replaying.
+         */
+        private volatile FaceClock mClock = FaceClock.SYSTEM;
+        private volatile TraceReplayer mReplayer;
+        private TraceReplayer mPendingReplayer;
+        private InputTrace mInputTrace;
+
+        /*
+         * Latest complication data, for tap actions, and what each slot shows. The contents are
+         * published in the snapshots and only replaced when what a slot shows changes.
+         */
+        private final ComplicationData[] mComplicationData =
+                new ComplicationData[COMPLICATION_IDS.length];
+        private ComplicationContent[] mComplicationContents = {
+                ComplicationContent.EMPTY, ComplicationContent.EMPTY};
+
+        /*
+         * This engine's share of the process' bitmap budget: the frame, and the composed dial,
+         * complications, date atlases and ambient frame below, each of which but the frame can be
+         * drawn without its bitmap when it doesn't fit. The shared dial and hand sprites are
+         * counted by SharedAssets. Only used on the render thread.
+         */
+        private final BitmapBudget mBitmapBudget = new BitmapBudget();
 
+        /*
+         * The face's drawing, shared with the desktop renderer, and the target that puts it on
+         * the render thread's canvases. Both are reused so that drawing does not allocate. The
+         * paints are swapped in from the frame's PaintSets; mPaintSet is the set for its mode.
+         */
+        private final FacePainter mPainter = new FacePainter();
+        private PaintSet mPaintSet;
+        private final CanvasRenderTarget mRenderTarget = new CanvasRenderTarget();
+        /* Formatted on first use, see dayOfMonthString(). */
+        private final String[] mDayOfMonthStrings = new String[32];
+        /*
+         * The date numerals, pre-rendered for each mode so that frames don't lay out text. They
+         * are only built after the first frame, which draws the date as text instead.
+         */
+        private final DateAtlas mDateAtlas = new DateAtlas(mBitmapBudget, "date");
+        private final DateAtlas mAmbientDateAtlas = new DateAtlas(mBitmapBudget, "ambientDate");
+        private boolean mDateAtlasesReady;
+        /* One row of the ambient frame, for counting its lit pixels. */
+        private int[] mPixelRow;
+
+        /*
+         * Hands and center circle with their shadows baked in, used in interactive mode. They
+         * depend on the surface size and mute mode.
+         */
+        private final HandSprite mHourHandSprite = new HandSprite();
+        private final HandSprite mMinuteHandSprite = new HandSprite();
+        private final HandSprite mSecondHandSprite = new HandSprite();
+        private final HandSprite mCenterSprite = new HandSprite();
+        private final Paint mSpritePaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+        private boolean mHandSpritesValid;
+        /* The interactive paints the sprites were drawn with. */
+        private PaintSet mHandSpritePaints;
+
+        /* Hand rotations, in degrees, as they were last drawn to the surface. */
+        private float mHoursRotation;
+        private float mMinutesRotation;
+        private float mSecondsRotation;
+        private int mDayOfMonth;
+
+        /*
+         * Partial redraws rely on mFrameBitmap and the surface keeping the pixels outside the
+         * dirty rectangle, so they are only used once a full frame has been drawn to the current
+         * surface.
+         */
+        private boolean mFullFrameDrawn;
+        private boolean mPartialRedrawSupported = true;
+        private final RectF mDirtyBounds = new RectF();
+        private final Rect mDirtyRect = new Rect();
+
+        /* Pre-rendered dial (background and ticks), rebuilt when the size or the paints change. */
+        private Bitmap mDialBitmap;
+        /* The shared dial with this engine's complications drawn on top, if it has any. */
+        private Bitmap mComposedDialBitmap;
+
+        /*
+         * Complications are rendered into per-slot bitmaps and composited into mDialBitmap, so
+         * they cost nothing per frame. Time-dependent text is refreshed once a minute.
+         */
+        private final ComplicationSlot[] mComplicationSlots = {
+                new ComplicationSlot(mBitmapBudget, "leftComplication"),
+                new ComplicationSlot(mBitmapBudget, "bottomComplication")};
+        private long mComplicationMinute = Long.MIN_VALUE;
+
+        /*
+         * The dial and sprites, shared with the other engines in the process and with earlier
+         * ones through the disk cache, so that they needn't be drawn again. mAssetHolder holds
+         * the ones this engine uses, and is only used on the render thread.
+         */
+        private SharedAssets mAssets;
+        private SharedAssets.Holder mAssetHolder;
+        private int mDensityDpi;
+        /* When onCreateEngine was called, until the first frame has been drawn. */
+        private long mCreatedNanos;
+
+        /*
+         * The next minute's ambient frame, rendered right after an ambient frame is presented so
+         * that onTimeTick only has to blit it. Only allocated while in ambient mode.
+         */
+        private Bitmap mAmbientFrameBitmap;
+        private final Canvas mAmbientFrameCanvas = new Canvas();
+        private TimeModel mAmbientTimeModel;
+        /* Epoch minute shown by mAmbientFrameBitmap, or Long.MIN_VALUE if it is not valid. */
+        private long mAmbientFrameMinute = Long.MIN_VALUE;
+        /* When the last ambient onTimeTick arrived, or 0, for FrameStats. */
+        private volatile long mTimeTickNanos;
+
+        /*
+         * Draws the ambient face with its own paints, honouring the low-bit and burn-in display
+         * properties. The lit pixels of every ambient frame on screen, pre-rendered or drawn when
+         * due, are counted against the budget, and frames over it are logged.
+         */
+        private final AmbientRenderer mAmbientRenderer = new AmbientRenderer();
+        private int mLitPixelBudgetPercent;
+
+        Engine(long createdNanos) {
+            mCreatedNanos = createdNanos;
+        }
+
+        /*
+         * onCreate only does what the first frame needs: the style, the time, the interactive
+         * paints and the inputs it shows. The rest, i.e. the receivers, the theme listener, the
+         * date atlases and the ambient paints, is left until the first frame has been drawn, see
+         * onFullFrameDrawn().
+         */
         @Override
         public void onCreate(SurfaceHolder holder) {
             super.onCreate(holder);
 
             setWatchFaceStyle(new WatchFaceStyle.Builder(SimpletonWatchFace.this)
-                    .setAcceptsTapEvents(false)
+                    .setAcceptsTapEvents(true)
                     .setStatusBarGravity(Gravity.CENTER_HORIZONTAL | Gravity.CENTER_VERTICAL)
                     .build());
 
-            mCalendar = Calendar.getInstance();
+            setDefaultSystemComplicationProvider(LEFT_COMPLICATION_ID,
+                    SystemProviders.DAY_OF_WEEK, ComplicationData.TYPE_SHORT_TEXT);
+            setDefaultSystemComplicationProvider(BOTTOM_COMPLICATION_ID,
+                    SystemProviders.STEP_COUNT, ComplicationData.TYPE_SHORT_TEXT);
+            setActiveComplications(COMPLICATION_IDS);
+
+            mTimeModel = new TimeModel(TimeZone.getDefault());
+            mAmbientTimeModel = new TimeModel(TimeZone.getDefault());
+            mInputTimeModel = new TimeModel(TimeZone.getDefault());
 
-            initializeBackground();
             initializeWatchFace();
+            mDensityDpi = getResources().getDisplayMetrics().densityDpi;
+            mAssets = SharedAssets.get(getCacheDir(), Arrays.hashCode(new int[]{
+                    ASSET_VERSION, FaceGeometry.CONSTANTS_HASH, SHADOW_RADIUS}));
+            mAssetHolder = new SharedAssets.Holder(mAssets);
+            loadTheme();
+            /* The receiver isn't registered yet, but the sticky broadcast has the level. */
+            final Intent battery = SimpletonWatchFace.this.registerReceiver(null,
+                    new IntentFilter(Intent.ACTION_BATTERY_CHANGED));
+            if (battery != null) {
+                mInputs.setBatteryPercent(getBatteryPercent(battery));
+            }
+            publishState();
+
+            mRefreshRate = ((WindowManager) getSystemService(Context.WINDOW_SERVICE))
+                    .getDefaultDisplay().getRefreshRate();
+            mRenderThread = new HandlerThread("SimpletonRender", Process.THREAD_PRIORITY_DISPLAY);
+            mRenderThread.start();
+            mUpdateTimeHandler = new EngineHandler(this, mRenderThread.getLooper());
+        }
+
+        /**
+         * Logs how long the engine took from {@code onCreateEngine} to its first frame, in every
+         * build, and starts the initialization left out of {@link #onCreate}. Called with
+         * {@link #mSurfaceLock} held after a full frame has been drawn.
+         */
+        private void onFullFrameDrawn() {
+            if (mCreatedNanos == 0) {
+                return;
+            }
+            Log.i(STARTUP_TAG, String.format(Locale.US, "First frame %.1f ms after onCreateEngine",
+                    (System.nanoTime() - mCreatedNanos) / 1e6));
+            mCreatedNanos = 0;
+            mUpdateTimeHandler.sendEmptyMessage(MSG_INITIALIZE_DEFERRED);
+            mMainHandler.post(mDeferredInit);
+        }
+
+        /**
+         * The main thread's share of the initialization left until after the first frame.
+         */
+        private void initializeDeferred() {
+            mDeferredInitDone = true;
+            ThemeSettings.getPreferences(SimpletonWatchFace.this)
+                    .registerOnSharedPreferenceChangeListener(mThemeListener);
+            /* The theme may have changed before the listener was registered. */
+            final PaintSets paintSets = mPaintSets;
+            loadTheme();
+            if (mPaintSets != paintSets) {
+                requestRedraw();
+            }
+            if (isVisible()) {
+                registerReceiver();
+            }
+            if (BuildConfig.INPUT_TRACE) {
+                startInputTrace();
+                if (mPendingReplayer != null && !mSurfaceGeometry.isEmpty()) {
+                    startReplay();
+                }
+            }
+        }
+
+        /**
+         * The render thread's share of the initialization left until after the first frame: the
+         * date atlas for the current mode, and the ambient paints, so that they are ready before
+         * the first switch to ambient. The other mode's atlas is built when the mode changes.
+         */
+        private void initializeDeferredResources() {
+            synchronized (mSurfaceLock) {
+                mDateAtlasesReady = true;
+                if (mFrame == null) {
+                    return;
+                }
+                mFrame.paints.get(true, mFrame.lowBitAmbient, mFrame.burnInProtection,
+                        mFrame.muteMode);
+                if (!mGeometry.isEmpty()) {
+                    updateDateAtlas(mFrame.ambient);
+                }
+            }
+        }
+
+        private void updateDateAtlas(boolean ambient) {
+            for (int day = 1; day < mDayOfMonthStrings.length; day++) {
+                dayOfMonthString(day);
+            }
+            (ambient ? mAmbientDateAtlas : mDateAtlas).update(mGeometry, mPaintSet.dateText,
+                    mDayOfMonthStrings);
+        }
+
+        private String dayOfMonthString(int day) {
+            if (mDayOfMonthStrings[day] == null) {
+                mDayOfMonthStrings[day] = String.format(Locale.getDefault(), "%d", day);
+            }
+            return mDayOfMonthStrings[day];
+        }
+
+        /**
+         * Starts recording the inputs, from the current state, and loads a trace to replay if
+         * one was copied to {@link #REPLAY_FILE}.
+         */
+        private void startInputTrace() {
+            mInputTrace = new InputTrace(TRACE_CAPACITY);
+            trace(InputTrace.AMBIENT, mAmbient ? 1 : 0);
+            trace(InputTrace.VISIBILITY, mVisible ? 1 : 0);
+            trace(InputTrace.MUTE, mInputs.isMuteMode() ? 1 : 0);
+            trace(InputTrace.TIME_ZONE, mInputTimeModel.getTimeZone().getOffset(
+                    mClock.currentTimeMillis()));
+
+            final File replayFile = new File(getFilesDir(), REPLAY_FILE);
+            if (!replayFile.isFile()) {
+                return;
+            }
+            try {
+                mPendingReplayer = new TraceReplayer(InputTrace.readFrom(replayFile), this,
+                        mUpdateTimeHandler, mMainHandler);
+            } catch (IOException e) {
+                Log.w(TAG, "Can't read " + replayFile, e);
+            }
+            if (!replayFile.delete()) {
+                Log.w(TAG, "Can't delete " + replayFile);
+            }
+        }
+
+        /**
+         * Records an input at the current time, unless inputs are not recorded.
+         */
+        private void trace(byte type, int value) {
+            if (mInputTrace != null) {
+                trace(type, mClock.currentTimeMillis(), value);
+            }
+        }
+
+        private void trace(byte type, long timeMs, int value) {
+            final InputTrace trace = mInputTrace;
+            if (trace != null && mReplayer == null) {
+                trace.record(type, timeMs, value);
+            }
         }
 
-        private void initializeBackground() {
-            mBackgroundPaint = new Paint();
-            mBackgroundPaint.setColor(Color.BLACK);
+        /**
+         * Writes the recorded inputs to {@link #TRACE_FILE}, on the render thread.
+         */
+        private void writeInputTrace() {
+            final InputTrace trace = mInputTrace;
+            if (trace == null) {
+                return;
+            }
+            final File file = new File(getFilesDir(), TRACE_FILE);
+            mUpdateTimeHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        trace.writeTo(file);
+                    } catch (IOException e) {
+                        Log.w(TAG, "Can't write " + file, e);
+                    }
+                }
+            });
+        }
+
+        /**
+         * Replays {@link #mPendingReplayer}'s trace in place of the live inputs and timer.
+         */
+        private void startReplay() {
+            final TraceReplayer replayer = mPendingReplayer;
+            mPendingReplayer = null;
+            mReplayer = replayer;
+            mClock = replayer;
+            updateTimer();
+            replayer.start();
+        }
+
+        @Override
+        public void onReplayFinished() {
+            mReplayer = null;
+            mClock = FaceClock.SYSTEM;
+            /* Go back to the live inputs. The battery receiver gets the sticky level again. */
+            handleMuteModeChanged(
+                    getInterruptionFilter() == WatchFaceService.INTERRUPTION_FILTER_NONE);
+            handleTimeZoneChanged(TimeZone.getDefault());
+            unregisterReceiver();
+            if (isVisible()) {
+                registerReceiver();
+            }
+            handleAmbientModeChanged(isInAmbientMode());
+            handleVisibilityChanged(isVisible());
+        }
+
+        /**
+         * Publishes a new snapshot of the engine state to the render thread. Must be called on the
+         * main thread whenever one of the inputs changes.
+         */
+        private void publishState() {
+            mState = new FaceState(mSurfaceGeometry, mInputTimeModel.getTimeZone(), mVisible,
+                    mAmbient, mLowBitAmbient, mBurnInProtection, mInputs.isMuteMode(), mPaintSets,
+                    mInputs.getBatteryPercent(), mInputs.getDisplayedBatteryPercent(),
+                    mShowFrameStats, mComplicationContents);
         }
 
         private void initializeWatchFace() {
-            /* Set defaults for colors */
-            mWatchHandShadowColor = Color.BLACK;
-
-            mWatchBackgroundColor = Color.BLACK;
-            mWatchTickColor = Color.LTGRAY;
-            mWatchMainColor = Color.WHITE;
-            mWatchSecondaryColor = Color.DKGRAY;
-            mWatchSecondColor = Color.RED;
-            mWatchDateTextColor = Color.WHITE;
-            mWatchDateBoxColor = Color.LTGRAY;
-            mWatchBatteryColor = Color.WHITE;
-
-            mMainPaint = new Paint();
-            mMainPaint.setColor(mWatchMainColor);
-            mMainPaint.setAntiAlias(true);
-            mMainPaint.setStrokeCap(Paint.Cap.BUTT);
-            mMainPaint.setShadowLayer(SHADOW_RADIUS, 0, 0, mWatchHandShadowColor);
-
-            mSecondaryPaint = new Paint();
-            mSecondaryPaint.setColor(mWatchSecondaryColor);
-            mSecondaryPaint.setAntiAlias(true);
-            mSecondaryPaint.setStrokeCap(Paint.Cap.BUTT);
-
-
-            mSecondPaint = new Paint();
-            mSecondPaint.setColor(mWatchSecondColor);
-            mSecondPaint.setStrokeWidth(1f);
-            mSecondPaint.setAntiAlias(true);
-            mSecondPaint.setStrokeCap(Paint.Cap.BUTT);
-            mSecondPaint.setStyle(Paint.Style.FILL_AND_STROKE);
-            mSecondPaint.setShadowLayer(SHADOW_RADIUS, 0, 0, mWatchHandShadowColor);
-
-            mSmallTickPaint = new Paint();
-            mSmallTickPaint.setColor(mWatchTickColor);
-            mSmallTickPaint.setAntiAlias(true);
-
-            mDateTextPaint = new Paint();
-            mDateTextPaint.setColor(mWatchDateTextColor);
-            mDateTextPaint.setAntiAlias(true);
-            mDateTextPaint.setTextSize(getResources().getDimensionPixelSize(R.dimen.fontsize));
-            mDateTextPaint.setTextAlign(Paint.Align.CENTER);
-
-            mDateBoxPaint = new Paint();
-            mDateBoxPaint.setColor(mWatchDateBoxColor);
-            mDateBoxPaint.setAntiAlias(true);
-            mDateBoxPaint.setStrokeWidth(0);
-            mDateBoxPaint.setStyle(Paint.Style.STROKE);
-
-            mBatteryPaint = new Paint();
-            mBatteryPaint.setColor(mWatchBatteryColor);
-            mBatteryPaint.setAntiAlias(true);
-            mBatteryPaint.setStrokeCap(Paint.Cap.BUTT);
+            mFrameStatsPaint = new Paint();
+            mFrameStatsPaint.setColor(Color.GREEN);
+            mFrameStatsPaint.setAntiAlias(true);
+            mFrameStatsPaint.setTextSize(
+                    getResources().getDimensionPixelSize(R.dimen.fontsize) / 2f);
+            mFrameStatsPaint.setTextAlign(Paint.Align.CENTER);
+
+            mLitPixelBudgetPercent =
+                    getResources().getInteger(R.integer.ambient_lit_pixel_budget_percent);
+            mSweepMinStepPx = getResources().getDimension(R.dimen.sweep_min_step);
+            BitmapBudget.setBudgetBytes(Runtime.getRuntime().maxMemory() / 100
+                    * getResources().getInteger(R.integer.bitmap_budget_percent));
+        }
 
+        /**
+         * Builds the paints for every mode from the selected theme, to be published with the
+         * next snapshot. The render thread swaps them in by reference.
+         */
+        private void loadTheme() {
+            final FaceTheme theme = ThemeSettings.loadSelected(SimpletonWatchFace.this);
+            mPaintSets = mAssets.getPaintSets(theme,
+                    getResources().getDimensionPixelSize(R.dimen.fontsize), SHADOW_RADIUS);
         }
 
         @Override
         public void onDestroy() {
+            if (mReplayer != null) {
+                mReplayer.cancel();
+            }
+            mMainHandler.removeCallbacks(mDeferredInit);
+            ThemeSettings.getPreferences(SimpletonWatchFace.this)
+                    .unregisterOnSharedPreferenceChangeListener(mThemeListener);
             mUpdateTimeHandler.removeMessages(MSG_UPDATE_TIME);
+            mUpdateTimeHandler.removeMessages(MSG_DRAW_FRAME);
+            mUpdateTimeHandler.removeMessages(MSG_PREPARE_AMBIENT_FRAME);
+            mUpdateTimeHandler.removeMessages(MSG_INITIALIZE_DEFERRED);
+            mUpdateTimeHandler.removeMessages(MSG_STOP_FRAMES);
+            /*
+             * Quitting drops the messages left in the queue, including the scheduler's, so stop it
+             * first: a frame callback must not run once the engine is gone.
+             */
+            mUpdateTimeHandler.sendMessageAtFrontOfQueue(
+                    mUpdateTimeHandler.obtainMessage(MSG_QUIT));
+            synchronized (mSurfaceLock) {
+                mAssetHolder.releaseAll();
+                mBitmapBudget.releaseAll();
+            }
+            mAssets.releaseGeometry(mSurfaceGeometry);
             super.onDestroy();
         }
 
         @Override
         public void onPropertiesChanged(Bundle properties) {
             super.onPropertiesChanged(properties);
+            final boolean lowBitAmbient = properties.getBoolean(PROPERTY_LOW_BIT_AMBIENT, false);
+            final boolean burnInProtection =
+                    properties.getBoolean(PROPERTY_BURN_IN_PROTECTION, false);
+            if (lowBitAmbient != mLowBitAmbient || burnInProtection != mBurnInProtection) {
+                mLowBitAmbient = lowBitAmbient;
+                mBurnInProtection = burnInProtection;
+                requestRedraw();
+            }
         }
 
         @Override
         public void onTimeTick() {
             super.onTimeTick();
-            invalidate();
+            if (mReplayer == null) {
+                handleTimeTick();
+            }
+        }
+
+        @Override
+        public void handleTimeTick() {
+            trace(InputTrace.TIME_TICK, 0);
+            if (BuildConfig.FRAME_STATS && mAmbient) {
+                mTimeTickNanos = System.nanoTime();
+            }
+            requestFrame();
         }
 
         @Override
         public void onAmbientModeChanged(boolean inAmbientMode) {
             super.onAmbientModeChanged(inAmbientMode);
-            mAmbient = inAmbientMode;
+            if (mReplayer == null) {
+                handleAmbientModeChanged(inAmbientMode);
+            }
+        }
 
-            updateWatchHandStyle();
+        @Override
+        public void handleAmbientModeChanged(boolean inAmbientMode) {
+            trace(InputTrace.AMBIENT, inAmbientMode ? 1 : 0);
+            mAmbient = inAmbientMode;
+            publishState();
+            if (!inAmbientMode) {
+                mUpdateTimeHandler.removeMessages(MSG_PREPARE_AMBIENT_FRAME);
+            }
+            requestFrame();
 
             /* Check and trigger whether or not timer should be running (only in active mode). */
             updateTimer();
         }
 
-        private void updateWatchHandStyle() {
-            if (mAmbient) {
-                mMainPaint.setColor(Color.WHITE);
-                mSecondaryPaint.setColor(Color.WHITE);
-                mSecondPaint.setColor(Color.WHITE);
-                mSmallTickPaint.setColor(Color.WHITE);
-                mDateTextPaint.setColor(Color.WHITE);
-                mBatteryPaint.setColor(Color.WHITE);
-
-                mMainPaint.setAntiAlias(false);
-                mSecondaryPaint.setAntiAlias(false);
-                mSecondPaint.setAntiAlias(false);
-                mSmallTickPaint.setAntiAlias(false);
-                mDateTextPaint.setAntiAlias(false);
-                mBatteryPaint.setAntiAlias(false);
-
-                mMainPaint.setStyle(Paint.Style.STROKE);
-                mSecondaryPaint.setStyle(Paint.Style.STROKE);
-                mSecondPaint.setStyle(Paint.Style.STROKE);
-                mSmallTickPaint.setStyle(Paint.Style.STROKE);
-
-            } else {
-                mMainPaint.setColor(mWatchMainColor);
-                mSecondaryPaint.setColor(mWatchSecondaryColor);
-                mSecondPaint.setColor(mWatchSecondColor);
-                mSmallTickPaint.setColor(mWatchTickColor);
-                mDateTextPaint.setColor(mWatchMainColor);
-                mBatteryPaint.setColor(mWatchBatteryColor);
-
-                mMainPaint.setAntiAlias(true);
-                mSecondaryPaint.setAntiAlias(true);
-                mSecondPaint.setAntiAlias(true);
-                mSmallTickPaint.setAntiAlias(true);
-                mDateTextPaint.setAntiAlias(true);
-                mBatteryPaint.setAntiAlias(true);
+        /**
+         * Brings the render thread's resources up to date with a newly published snapshot. Called
+         * with {@link #mSurfaceLock} held at the start of a frame.
+         */
+        private void applyState(FaceState state) {
+            final FaceState previous = mFrame;
+            final long heldBytes = BitmapBudget.getHeldBytes();
+            mFrame = state;
+            mFullFrameDrawn = false;
+            mAmbientFrameMinute = Long.MIN_VALUE;
+            if (!state.ambient) {
+                mAmbientFrameBitmap = null;
+                mAmbientFrameCanvas.setBitmap(null);
+                mBitmapBudget.release("ambientFrame");
+            }
+            if (state.timeZone != mTimeModel.getTimeZone()) {
+                mTimeModel.setTimeZone(state.timeZone);
+            }
 
-                mMainPaint.setStyle(Paint.Style.FILL_AND_STROKE);
-                mSecondaryPaint.setStyle(Paint.Style.FILL_AND_STROKE);
-                mSecondPaint.setStyle(Paint.Style.FILL_AND_STROKE);
-                mSmallTickPaint.setStyle(Paint.Style.FILL_AND_STROKE);
+            final boolean geometryChanged = previous == null || previous.geometry != state.geometry;
+            /* Mode switches and theme changes only swap in another precomputed set. */
+            final PaintSet paints = state.paints.get(state.ambient, state.lowBitAmbient,
+                    state.burnInProtection, state.muteMode);
+            final boolean paintsChanged = paints != mPaintSet;
+            if (paintsChanged) {
+                mPaintSet = paints;
+                if (state.ambient) {
+                    mAmbientRenderer.setPaints(paints, state.burnInProtection);
+                } else {
+                    mPainter.setPaints(paints);
+                }
+            }
+            if (geometryChanged) {
+                mGeometry = state.geometry;
+                resizeFrameBitmap();
+                mPainter.setGeometry(mGeometry);
+                mFrameRateGovernor.setSecondHand(mGeometry.secondHandFrontLength,
+                        mSweepMinStepPx);
+                mComplicationSlots[LEFT_COMPLICATION_ID].setBounds(mGeometry.leftSlotLeft,
+                        mGeometry.leftSlotTop, mGeometry.leftSlotRight, mGeometry.leftSlotBottom);
+                mComplicationSlots[BOTTOM_COMPLICATION_ID].setBounds(mGeometry.bottomSlotLeft,
+                        mGeometry.bottomSlotTop, mGeometry.bottomSlotRight,
+                        mGeometry.bottomSlotBottom);
+            }
+            boolean complicationsChanged = false;
+            for (int id : COMPLICATION_IDS) {
+                if (previous == null || previous.complications[id] != state.complications[id]) {
+                    complicationsChanged |=
+                            mComplicationSlots[id].setContent(state.complications[id]);
+                }
+            }
+            if (geometryChanged || paintsChanged || complicationsChanged) {
+                rebuildDialLayer();
+            }
+            if (geometryChanged || (!state.ambient && paints != mHandSpritePaints)) {
+                mHandSpritesValid = false;
+            }
+            rebuildHandSprites();
+            if (mDateAtlasesReady && !mGeometry.isEmpty()) {
+                updateDateAtlas(state.ambient);
+            }
+            if (BuildConfig.FRAME_STATS && BitmapBudget.getHeldBytes() != heldBytes) {
+                Log.d(TAG, String.format(Locale.US, "Bitmaps hold %d KB, budget is %d KB",
+                        BitmapBudget.getHeldBytes() / 1024,
+                        BitmapBudget.getBudgetBytes() / 1024));
             }
         }
 
@@ -329,60 +812,65 @@ public class SimpletonWatchFace extends CanvasWatchFaceService {
             super.onInterruptionFilterChanged(interruptionFilter);
             boolean inMuteMode = (interruptionFilter == WatchFaceService.INTERRUPTION_FILTER_NONE);
 
-            /* Dim display in mute mode. */
-            if (mMuteMode != inMuteMode) {
-                mMuteMode = inMuteMode;
-                mMainPaint.setAlpha(inMuteMode ? 100 : 255);
-                mSecondaryPaint.setAlpha(inMuteMode ? 100 : 255);
-                mSecondPaint.setAlpha(inMuteMode ? 80 : 255);
-                invalidate();
+            if (mReplayer == null) {
+                handleMuteModeChanged(inMuteMode);
             }
         }
 
         @Override
-        public void onSurfaceChanged(SurfaceHolder holder, int format, int width, int height) {
-            super.onSurfaceChanged(holder, format, width, height);
+        public void handleMuteModeChanged(boolean muteMode) {
+            trace(InputTrace.MUTE, muteMode ? 1 : 0);
+            if (mInputs.setMuteMode(muteMode)) {
+                requestRedraw();
+            }
+        }
 
-            /*
-             * Find the coordinates of the center point on the screen, and ignore the window
-             * insets, so that, on round watches with a "chin", the watch face is centered on the
-             * entire screen, not just the usable portion.
-             */
-            mCenterX = width / 2f;
-            mCenterY = height / 2f;
+        @Override
+        public void handleBatteryChanged(float batteryPercent) {
+            trace(InputTrace.BATTERY, Float.floatToIntBits(batteryPercent));
+            if (mInputs.setBatteryPercent(batteryPercent)) {
+                requestRedraw();
+            }
+        }
 
+        @Override
+        public void handleTimeZoneChanged(TimeZone timeZone) {
+            final long timeMs = mClock.currentTimeMillis();
+            trace(InputTrace.TIME_ZONE, timeZone.getOffset(timeMs));
+            if (FaceInputs.setTimeZone(mInputTimeModel, timeZone, timeMs)) {
+                requestRedraw();
+            }
+        }
+
+        @Override
+        public void onSurfaceChanged(SurfaceHolder holder, int format, int width, int height) {
             /*
-             * Calculate lengths of different hands based on watch screen size.
+             * The published geometry is shared with the render thread and other engines, so it
+             * is replaced, never modified.
              */
-            float radius = width / 2f;
-            mOuterTickRadius = radius * (OUTER_TICK_RADIUS / FACE_RADIUS);
-            mInnerSmallTickRadius = radius * (INNER_SMALL_TICK_RADIUS / FACE_RADIUS);
-            mInnerLargeTickRadius = radius * (INNER_LARGE_TICK_RADIUS / FACE_RADIUS);
-            mLargeTickWidth = radius * LARGE_TICK_WIDTH / FACE_RADIUS;
-
-            mSecondHandFrontLength = radius * (SECOND_FRONT_RADIUS / FACE_RADIUS);
-            mSecondHandBackLength = radius * (SECOND_BACK_RADIUS / FACE_RADIUS);
-            mSecondHandWidth = radius * (SECOND_WIDTH / FACE_RADIUS);
-
-            mMinuteHandFrontLength = radius * (MINUTE_FRONT_RADIUS / FACE_RADIUS);
-            mMinuteHandBackLength = radius * (MINUTE_BACK_RADIUS / FACE_RADIUS);
-            mMinuteHandHighlightLength = radius * (MINUTE_HIGHLIGHT_RADIUS / FACE_RADIUS);
-            mMinuteHandWidth = radius * (MINUTE_WIDTH / FACE_RADIUS);
-
-            mHourHandFrontLength = radius * (HOUR_FRONT_RADIUS / FACE_RADIUS);
-            mHourHandBackLength = radius * (HOUR_BACK_RADIUS / FACE_RADIUS);
-            mHourHandHighlightLength = radius * (HOUR_HIGHLIGHT_RADIUS / FACE_RADIUS);
-            mHourHandWidth = radius * (HOUR_WIDTH / FACE_RADIUS);
-            mHourHandCircle = radius * (HOUR_CIRCLE / FACE_RADIUS);
+            final FaceGeometry geometry = mAssets.acquireGeometry(width, height);
+            mAssets.releaseGeometry(mSurfaceGeometry);
+            mSurfaceGeometry = geometry;
+            mInputs.setBatteryBarHeight(geometry.batteryBarHeight());
+            publishState();
+            synchronized (mSurfaceLock) {
+                mSurfaceReady = true;
+                mFullFrameDrawn = false;
+            }
 
-            final float dateTextLeft = radius * (DATE_TEXT_LEFT / FACE_RADIUS);
-            final float dateTextWidth = radius * (DATE_TEXT_WIDTH / FACE_RADIUS);
-            final float dateTextHeight = radius * (DATE_TEXT_HEIGHT / FACE_RADIUS);
+            super.onSurfaceChanged(holder, format, width, height);
+            if (mPendingReplayer != null) {
+                startReplay();
+            }
+        }
 
-            mDateTextRect = new RectF(mCenterX + dateTextLeft,
-                    mCenterY - dateTextHeight / 2f,
-                    mCenterX + dateTextLeft + dateTextWidth,
-                    mCenterY + dateTextHeight / 2f);
+        @Override
+        public void onSurfaceDestroyed(SurfaceHolder holder) {
+            /* Wait for a frame in progress on the render thread, and stop further ones. */
+            synchronized (mSurfaceLock) {
+                mSurfaceReady = false;
+            }
+            super.onSurfaceDestroyed(holder);
         }
 
         /**
@@ -400,219 +888,713 @@ public class SimpletonWatchFace extends CanvasWatchFaceService {
                     break;
                 case TAP_TYPE_TAP:
                     // The user has completed the tap gesture.
-                    // TODO: Add code to handle the tap gesture.
-                    Toast.makeText(getApplicationContext(), R.string.message, Toast.LENGTH_SHORT)
-                            .show();
+                    if (launchComplicationTapAction(x, y)) {
+                        return;
+                    }
+                    if (BuildConfig.FRAME_STATS) {
+                        mShowFrameStats = !mShowFrameStats;
+                        publishState();
+                    }
                     break;
             }
-            invalidate();
+            requestFrame();
+        }
+
+        /**
+         * Runs the tap action of the complication at {@code x, y}, if there is one.
+         *
+         * @return true if a complication was tapped.
+         */
+        private boolean launchComplicationTapAction(int x, int y) {
+            final FaceGeometry geometry = mSurfaceGeometry;
+            int id;
+            if (x >= geometry.leftSlotLeft && x <= geometry.leftSlotRight
+                    && y >= geometry.leftSlotTop && y <= geometry.leftSlotBottom) {
+                id = LEFT_COMPLICATION_ID;
+            } else if (x >= geometry.bottomSlotLeft && x <= geometry.bottomSlotRight
+                    && y >= geometry.bottomSlotTop && y <= geometry.bottomSlotBottom) {
+                id = BOTTOM_COMPLICATION_ID;
+            } else {
+                return false;
+            }
+            final ComplicationData data = mComplicationData[id];
+            if (data == null || data.getTapAction() == null
+                    || !data.isActive(System.currentTimeMillis())) {
+                return false;
+            }
+            try {
+                data.getTapAction().send();
+            } catch (PendingIntent.CanceledException e) {
+                Log.w(TAG, "Complication tap action was cancelled", e);
+            }
+            return true;
         }
 
+        @Override
+        public void onComplicationDataUpdate(int complicationId, ComplicationData data) {
+            mComplicationData[complicationId] = data;
+            final ComplicationContent content =
+                    ComplicationContent.from(SimpletonWatchFace.this, data,
+                            System.currentTimeMillis());
+            final ComplicationContent current = mComplicationContents[complicationId];
+            /* Time-dependent text is extracted again from the data, so keep that up to date. */
+            if (content.equals(current)
+                    && (!content.timeDependent || content.data == current.data)) {
+                return;
+            }
+            final ComplicationContent[] contents = mComplicationContents.clone();
+            contents[complicationId] = content;
+            mComplicationContents = contents;
+            requestRedraw();
+        }
+
+        /**
+         * Extracts time-dependent complication text again once a minute, and rebuilds the dial
+         * if it changed. Called with {@link #mSurfaceLock} held before a frame is drawn.
+         */
+        private void updateTimeDependentComplications(long timeMs) {
+            final long minute = timeMs / MILLIS_PER_MINUTE;
+            if (minute == mComplicationMinute) {
+                return;
+            }
+            mComplicationMinute = minute;
+            boolean changed = false;
+            for (ComplicationSlot slot : mComplicationSlots) {
+                final ComplicationContent content = slot.getContent();
+                if (content.timeDependent) {
+                    changed |= slot.setContent(ComplicationContent.from(SimpletonWatchFace.this,
+                            content.data, timeMs));
+                }
+            }
+            if (changed) {
+                rebuildDialLayer();
+                mFullFrameDrawn = false;
+                mAmbientFrameMinute = Long.MIN_VALUE;
+            }
+        }
+
+        /**
+         * Draws a frame the framework asked for with the last frame drawn on the render thread,
+         * and asks the render thread for a current one. All frames are drawn there by
+         * {@link #drawFrame(boolean, long)}, see {@link #mFrameLock}.
+         */
         @Override
         public void onDraw(Canvas canvas, Rect bounds) {
-            long now = System.currentTimeMillis();
-            mCalendar.setTimeInMillis(now);
+            synchronized (mFrameLock) {
+                if (mFrameBitmap != null) {
+                    canvas.drawBitmap(mFrameBitmap, 0, 0, null);
+                } else {
+                    canvas.drawColor(Color.BLACK);
+                }
+            }
+            requestFrame();
+        }
 
-            drawBackground(canvas);
-            drawWatchFace(canvas);
+        /**
+         * Draws a frame on the render thread, with the latest published state.
+         *
+         * @param partial whether only the region swept by the hands may be repainted.
+         * @param timeMs  wall clock time to draw the hands for.
+         */
+        private void drawFrame(boolean partial, long timeMs) {
+            trace(InputTrace.FRAME, timeMs, partial ? 1 : 0);
+            synchronized (mSurfaceLock) {
+                if (!mSurfaceReady) {
+                    return;
+                }
+                final FaceState state = mState;
+                if (state != mFrame) {
+                    applyState(state);
+                }
+                if (mGeometry.isEmpty()) {
+                    return;
+                }
+                updateTimeDependentComplications(timeMs);
+                if (partial && drawDirtyRegion(timeMs)) {
+                    return;
+                }
+
+                synchronized (mFrameLock) {
+                    drawFullFrame(mFrameCanvas, timeMs);
+                }
+                if (!postFrame(null)) {
+                    mFullFrameDrawn = false;
+                    return;
+                }
+                onFullFrameDrawn();
+                if (mFrame.ambient && !mFrame.frameStatsVisible) {
+                    checkLitPixels();
+                }
+            }
         }
 
-        private void drawBackground(Canvas canvas) {
-            canvas.drawColor(mWatchBackgroundColor);
-            /*
-             * Draw ticks. Usually you will want to bake this directly into the photo, but in
-             * cases where you want to allow users to select their own photos, this dynamically
-             * creates them on top of the photo.
-             */
-            int ticks = 60;
-            int skipTicks = 5;
-            for (int tickIndex = 0; tickIndex < ticks; tickIndex++) {
-                if ((tickIndex % skipTicks == 0) && (tickIndex != 15))
-                    continue;
-                float tickRot = (float) (tickIndex * Math.PI * 2 / ticks);
-                float innerX = (float) Math.sin(tickRot) * mInnerSmallTickRadius;
-                float innerY = (float) -Math.cos(tickRot) * mInnerSmallTickRadius;
-                float outerX = (float) Math.sin(tickRot) * mOuterTickRadius;
-                float outerY = (float) -Math.cos(tickRot) * mOuterTickRadius;
-                canvas.drawLine(mCenterX + innerX, mCenterY + innerY,
-                        mCenterX + outerX, mCenterY + outerY, mSmallTickPaint);
-            }
-
-            if (!mAmbient) {
-                float width = mLargeTickWidth * 5 / 3f;
-                canvas.drawRect(mCenterX - (width / 2f),
-                        mCenterY - mOuterTickRadius,
-                        mCenterX + (width / 2f),
-                        mCenterY - mInnerLargeTickRadius,
-                        mMainPaint);
-
-                canvas.drawRect(
-                        mCenterX - (width * 3 / 5f) / 2f,
-                        mCenterY - mOuterTickRadius,
-                        mCenterX + (width * 3 / 5f) / 2f,
-                        mCenterY - mInnerLargeTickRadius,
-                        mSecondaryPaint);
+        /**
+         * Copies {@link #mFrameBitmap} to the surface, the whole of it or only {@code dirty}.
+         * Called on the render thread with {@link #mSurfaceLock} held, but not
+         * {@link #mFrameLock}.
+         *
+         * @return false if the surface couldn't be locked.
+         */
+        private boolean postFrame(Rect dirty) {
+            final SurfaceHolder holder = getSurfaceHolder();
+            final Canvas canvas = dirty == null ? holder.lockCanvas() : holder.lockCanvas(dirty);
+            if (canvas == null) {
+                return false;
+            }
+            try {
+                /* The surface may have widened the dirty rectangle, the bitmap covers all of it. */
+                canvas.drawBitmap(mFrameBitmap, 0, 0, null);
+            } finally {
+                holder.unlockCanvasAndPost(canvas);
+            }
+            return true;
+        }
+
+        @Override
+        public void handleFrame(boolean partial, long timeMs) {
+            drawFrame(partial, timeMs);
+        }
+
+        private void drawFullFrame(Canvas canvas, long timeMs) {
+            final long startNanos = System.nanoTime();
+            mTimeModel.setTime(timeMs);
 
+            mDayOfMonth = mTimeModel.getDayOfMonth();
+            mSecondsRotation = mTimeModel.getSecondsRotation(mFrameRateGovernor.isTicking());
+            mMinutesRotation = mTimeModel.getMinutesRotation();
+            mHoursRotation = mTimeModel.getHoursRotation();
+
+            final boolean ambient = mFrame.ambient;
+            final boolean frameStatsVisible = mFrame.frameStatsVisible;
+            final long minute = timeMs / MILLIS_PER_MINUTE;
+            if (ambient && !frameStatsVisible && minute == mAmbientFrameMinute) {
+                canvas.drawBitmap(mAmbientFrameBitmap, 0, 0, null);
             } else {
-                float width = mLargeTickWidth * 5 / 3f;
-                canvas.drawRect(
-                        mCenterX - (width / 2f),
-                        mCenterY - mOuterTickRadius,
-                        mCenterX + (width / 2f),
-                        mCenterY - mInnerLargeTickRadius,
-                        mMainPaint);
-                canvas.drawRect(
-                        mCenterX - (width / 6f),
-                        mCenterY - mOuterTickRadius,
-                        mCenterX + (width / 6f),
-                        mCenterY - mInnerLargeTickRadius,
-                        mMainPaint);
-
-            }
-
-
-            ticks = 12;
-            for (int tickIndex = 1; tickIndex < ticks; tickIndex++) {
-                if (tickIndex == 3)
-                    continue;
-                canvas.save();
-                canvas.rotate(tickIndex * (360f / ticks), mCenterX, mCenterY);
-                canvas.drawRect(
-                        mCenterX - (mLargeTickWidth / 2f),
-                        mCenterY - mOuterTickRadius,
-                        mCenterX + (mLargeTickWidth / 2f),
-                        mCenterY - mInnerLargeTickRadius,
-                        mMainPaint);
-                if (!mAmbient) {
-                    canvas.drawRect(
-                            mCenterX - (mLargeTickWidth / 6f),
-                            mCenterY - mOuterTickRadius,
-                            mCenterX + (mLargeTickWidth / 6f),
-                            mCenterY - mInnerLargeTickRadius,
-                            mSecondaryPaint);
-                }
-                canvas.restore();
+                if (ambient) {
+                    drawAmbientFrame(canvas, mTimeModel, minute);
+                } else {
+                    drawBackground(canvas);
+                    drawWatchFace(canvas);
+                }
+                if (frameStatsVisible) {
+                    drawFrameStats(canvas);
+                }
+            }
+            mFullFrameDrawn = true;
+
+            if (ambient) {
+                /* Render the next frame once this one has been posted. */
+                mAmbientFrameMinute = Long.MIN_VALUE;
+                mUpdateTimeHandler.removeMessages(MSG_PREPARE_AMBIENT_FRAME);
+                if (BuildConfig.AMBIENT_PRERENDER) {
+                    mUpdateTimeHandler.sendEmptyMessage(MSG_PREPARE_AMBIENT_FRAME);
+                }
             }
 
+            if (BuildConfig.FRAME_STATS) {
+                final long endNanos = System.nanoTime();
+                mFrameStats.recordDraw(endNanos - startNanos);
+                if (mTimeTickNanos != 0) {
+                    mFrameStats.recordAmbientWake(endNanos - mTimeTickNanos);
+                    mTimeTickNanos = 0;
+                }
+            }
         }
 
-        private void drawWatchFace(Canvas canvas) {
+        /**
+         * Renders the ambient frame for the start of the next minute into
+         * {@link #mAmbientFrameBitmap}. In ambient mode the hands only move once a minute, so the
+         * next frame is fully known as soon as the current one has been presented.
+         */
+        private void prepareAmbientFrame() {
+            synchronized (mSurfaceLock) {
+                if (mState == mFrame && mFrame.ambient && mFrame.visible
+                        && !mGeometry.isEmpty()) {
+                    renderAmbientFrame();
+                }
+            }
+        }
 
-            /**
-             * Draw the battery level
+        private void renderAmbientFrame() {
+            /*
+             * Ambient frames are opaque and nearly black and white, which RGB_565 holds at half
+             * the size; low-bit ones are exactly black and white. Over the budget, each frame is
+             * drawn when it is due instead.
              */
-            float diff = (1 - mBatteryPercent) * (mOuterTickRadius - mInnerLargeTickRadius);
+            mAmbientFrameBitmap = mBitmapBudget.obtain("ambientFrame", mAmbientFrameBitmap,
+                    mGeometry.width, mGeometry.height, Bitmap.Config.RGB_565);
+            if (mAmbientFrameBitmap == null) {
+                mAmbientFrameCanvas.setBitmap(null);
+                logOverBudget("ambient frames");
+                return;
+            }
 
-            canvas.drawRect(mCenterX - (mLargeTickWidth / 6f),
-                    mCenterY - mOuterTickRadius + diff,
-                    mCenterX + (mLargeTickWidth / 6f),
-                    mCenterY - mInnerLargeTickRadius,
-                    mBatteryPaint);
+            final long minute = mClock.currentTimeMillis() / MILLIS_PER_MINUTE + 1;
+            if (mAmbientTimeModel.getTimeZone() != mTimeModel.getTimeZone()) {
+                mAmbientTimeModel.setTimeZone(mTimeModel.getTimeZone());
+            }
+            mAmbientTimeModel.setTime(minute * MILLIS_PER_MINUTE);
+            /* The bitmap is usually the previous one, reused, and the canvas is reset anyway. */
+            mAmbientFrameCanvas.setBitmap(mAmbientFrameBitmap);
+            drawAmbientFrame(mAmbientFrameCanvas, mAmbientTimeModel, minute);
+            mAmbientFrameMinute = minute;
+        }
 
+        /**
+         * Counts the lit pixels of the ambient frame that was just posted against the budget.
+         * Every ambient frame is checked, whether it was pre-rendered or drawn when due, e.g.
+         * with another burn-in shift, after it is on screen so that the wake-up isn't delayed.
+         * Frames with the frame stats overlay aren't what the user sees, so they aren't counted.
+         */
+        private void checkLitPixels() {
+            final int lit = countLitPixels(mFrameBitmap);
+            if (mFrameStats.recordLitPixels(lit, mFrameBitmap.getWidth() * mFrameBitmap.getHeight(),
+                    mLitPixelBudgetPercent)) {
+                Log.w(TAG, String.format(Locale.US,
+                        "Ambient frame has %.1f%% of its pixels lit, budget is %d%%",
+                        mFrameStats.getLitPercent(), mLitPixelBudgetPercent));
+            }
+        }
 
+        /**
+         * Counts the lit pixels of a frame a row at a time, so that the frame isn't copied.
+         */
+        private int countLitPixels(Bitmap frame) {
+            final int width = frame.getWidth();
+            if (mPixelRow == null || mPixelRow.length < width) {
+                mPixelRow = new int[width];
+            }
+            int lit = 0;
+            for (int y = frame.getHeight() - 1; y >= 0; y--) {
+                frame.getPixels(mPixelRow, 0, width, 0, y, width, 1);
+                lit += AmbientRenderer.countLitPixels(mPixelRow, 0, width);
+            }
+            return lit;
+        }
 
-            /**
-             * Draw the Date and Date Box
-             */
-            final int date = mCalendar.get(Calendar.DAY_OF_MONTH);
-            final String dateStr = String.format(Locale.getDefault(), "%d", date);
-            final Rect textBound = new Rect();
-            mDateTextPaint.getTextBounds(dateStr, 0, dateStr.length(), textBound);
+        /**
+         * Draws the ambient face for the time in {@code model}, moved as {@code minute} asks
+         * for burn-in protection.
+         */
+        private void drawAmbientFrame(Canvas canvas, TimeModel model, long minute) {
+            final int shiftX = mAmbientRenderer.getShiftX(minute);
+            final int shiftY = mAmbientRenderer.getShiftY(minute);
+            if (shiftX != 0 || shiftY != 0) {
+                /* The moved dial leaves a strip of the surface uncovered. */
+                canvas.drawColor(Color.BLACK);
+            }
+            canvas.save();
+            canvas.translate(shiftX, shiftY);
+            drawBackground(canvas);
+            final CanvasRenderTarget target = mRenderTarget.setCanvas(canvas);
+            mAmbientRenderer.drawBattery(target, mGeometry, mFrame.displayedBatteryPercent);
+            if (!mDateAtlasesReady || !mAmbientDateAtlas.draw(canvas, model.getDayOfMonth())) {
+                mAmbientRenderer.drawDate(target, mGeometry,
+                        dayOfMonthString(model.getDayOfMonth()));
+            }
+            mAmbientRenderer.drawHands(target, mGeometry, model.getHoursRotation(),
+                    model.getMinutesRotation());
+            canvas.restore();
+        }
 
-            canvas.drawText(dateStr,
-                    mDateTextRect.left + mDateTextRect.width() / 2f,
-                    mCenterY + textBound.height() / 2f,
-                    mDateTextPaint);
-            if (!mAmbient) {
-                canvas.drawRect(mDateTextRect, mDateBoxPaint);
+        /**
+         * Draws the frame timing percentiles above the center of the face.
+         */
+        private void drawFrameStats(Canvas canvas) {
+            final float x = mGeometry.centerX;
+            float y = mGeometry.centerY - mGeometry.innerLargeTickRadius / 2f;
+            int length = mFrameStats.formatDraw(mFrameStatsText);
+            canvas.drawText(mFrameStatsText, 0, length, x, y, mFrameStatsPaint);
+            y += mFrameStatsPaint.getTextSize() * 1.2f;
+            length = mFrameStats.formatLateness(mFrameStatsText);
+            canvas.drawText(mFrameStatsText, 0, length, x, y, mFrameStatsPaint);
+        }
+
+        /**
+         * Redraws only the part of the surface covered by the hands that moved since the last
+         * frame, on top of the cached dial. Hands that moved less than {@link #MIN_HAND_STEP_PX}
+         * are left where they were drawn.
+         *
+         * @return false if a full redraw is needed instead.
+         */
+        private boolean drawDirtyRegion(long timeMs) {
+            if (!mPartialRedrawSupported || !mFullFrameDrawn || mFrame.ambient
+                    || mDialBitmap == null || mFrame.frameStatsVisible) {
+                return false;
             }
+            final long startNanos = System.nanoTime();
 
-            /*
-             * These calculations reflect the rotation in degrees per unit of time, e.g.,
-             * 360 / 60 = 6 and 360 / 12 = 30.
-             */
-            final float seconds =
-                    (mCalendar.get(Calendar.SECOND) + mCalendar.get(Calendar.MILLISECOND) / 1000f);
-            final float secondsRotation = seconds * 6f;
+            mTimeModel.setTime(timeMs);
+            if (mTimeModel.getDayOfMonth() != mDayOfMonth) {
+                return false;
+            }
 
-            final float minutesOffset = mCalendar.get(Calendar.SECOND) / 10f;
-            final float minutesRotation = mCalendar.get(Calendar.MINUTE) * 6f + minutesOffset;
+            mDirtyBounds.setEmpty();
+            final float secondsRotation =
+                    mTimeModel.getSecondsRotation(mFrameRateGovernor.isTicking());
+            if (handMoved(mSecondsRotation, secondsRotation, mGeometry.secondHandFrontLength)) {
+                addHandBounds(mSecondsRotation, mGeometry.secondHandFrontLength,
+                        mGeometry.secondHandBackLength, mGeometry.secondHandWidth);
+                addHandBounds(secondsRotation, mGeometry.secondHandFrontLength,
+                        mGeometry.secondHandBackLength, mGeometry.secondHandWidth);
+                mSecondsRotation = secondsRotation;
+            }
+            final float minutesRotation = mTimeModel.getMinutesRotation();
+            if (handMoved(mMinutesRotation, minutesRotation, mGeometry.minuteHandFrontLength)) {
+                addHandBounds(mMinutesRotation, mGeometry.minuteHandFrontLength,
+                        mGeometry.minuteHandBackLength, mGeometry.minuteHandWidth);
+                addHandBounds(minutesRotation, mGeometry.minuteHandFrontLength,
+                        mGeometry.minuteHandBackLength, mGeometry.minuteHandWidth);
+                mMinutesRotation = minutesRotation;
+            }
+            final float hoursRotation = mTimeModel.getHoursRotation();
+            if (handMoved(mHoursRotation, hoursRotation, mGeometry.hourHandFrontLength)) {
+                addHandBounds(mHoursRotation, mGeometry.hourHandFrontLength,
+                        mGeometry.hourHandBackLength, mGeometry.hourHandWidth);
+                addHandBounds(hoursRotation, mGeometry.hourHandFrontLength,
+                        mGeometry.hourHandBackLength, mGeometry.hourHandWidth);
+                mHoursRotation = hoursRotation;
+            }
+            if (mDirtyBounds.isEmpty()) {
+                return true;
+            }
 
-            final float hourHandOffset = mCalendar.get(Calendar.MINUTE) / 2f +
-                    mCalendar.get(Calendar.SECOND) / 120f;
-            final float hoursRotation = (mCalendar.get(Calendar.HOUR) * 30) + hourHandOffset;
+            mDirtyBounds.roundOut(mDirtyRect);
+            if (!mDirtyRect.intersect(0, 0, mGeometry.width, mGeometry.height)) {
+                return true;
+            }
 
+            synchronized (mFrameLock) {
+                mFrameCanvas.save();
+                mFrameCanvas.clipRect(mDirtyRect);
+                drawBackground(mFrameCanvas);
+                drawWatchFace(mFrameCanvas);
+                mFrameCanvas.restore();
+            }
+            final boolean posted;
+            try {
+                posted = postFrame(mDirtyRect);
+            } catch (IllegalArgumentException | IllegalStateException e) {
+                /* The surface doesn't support software partial updates, stop trying. */
+                mPartialRedrawSupported = false;
+                return false;
+            }
+            if (!posted) {
+                return false;
+            }
+            if (BuildConfig.FRAME_STATS) {
+                mFrameStats.recordDraw(System.nanoTime() - startNanos);
+            }
+            return true;
+        }
 
-            /*
-             * Save the canvas state before we can begin to rotate it.
-             */
-            canvas.save();
+        private boolean handMoved(float fromRotation, float toRotation, float length) {
+            float delta = Math.abs(toRotation - fromRotation) % 360f;
+            if (delta > 180f) {
+                delta = 360f - delta;
+            }
+            return Math.toRadians(delta) * length >= MIN_HAND_STEP_PX;
+        }
 
-            if (!mAmbient) {
-                canvas.drawCircle(mCenterX, mCenterY, mHourHandCircle, mMainPaint);
+        /**
+         * Adds the bounding box of a hand, including its shadow, at the given rotation to
+         * {@link #mDirtyBounds}.
+         */
+        private void addHandBounds(float rotation, float frontLength, float backLength,
+                                   float width) {
+            final double radians = Math.toRadians(rotation);
+            final float dx = (float) Math.sin(radians);
+            final float dy = (float) -Math.cos(radians);
+            final float margin = width / 2f + SHADOW_EXTENT + HAND_BOUNDS_MARGIN;
+
+            final float tipX = mGeometry.centerX + dx * frontLength;
+            final float tipY = mGeometry.centerY + dy * frontLength;
+            final float tailX = mGeometry.centerX - dx * backLength;
+            final float tailY = mGeometry.centerY - dy * backLength;
+
+            final float left = Math.min(tipX, tailX) - margin;
+            final float top = Math.min(tipY, tailY) - margin;
+            final float right = Math.max(tipX, tailX) + margin;
+            final float bottom = Math.max(tipY, tailY) + margin;
+            if (mDirtyBounds.isEmpty()) {
+                mDirtyBounds.set(left, top, right, bottom);
+            } else {
+                mDirtyBounds.union(left, top);
+                mDirtyBounds.union(right, bottom);
             }
+        }
 
-            canvas.rotate(hoursRotation, mCenterX, mCenterY);
-            canvas.drawRect(mCenterX - (mHourHandWidth / 2f),
-                    mCenterY + mHourHandBackLength,
-                    mCenterX + (mHourHandWidth / 2f),
-                    mCenterY - mHourHandFrontLength,
-                    mMainPaint);
+        private void drawBackground(Canvas canvas) {
+            if (mDialBitmap != null) {
+                canvas.drawBitmap(mDialBitmap, 0, 0, null);
+            } else {
+                drawDial(canvas);
+                drawComplications(canvas);
+            }
+        }
 
-            if (!mAmbient) {
-                canvas.drawRect(mCenterX - (mHourHandWidth / 6f),
-                        mCenterY + mHourHandBackLength,
-                        mCenterX + (mHourHandWidth / 6f),
-                        mCenterY - mHourHandHighlightLength,
-                        mSecondaryPaint);
+        /**
+         * Sizes {@link #mFrameBitmap} to the surface. It has the surface's format and is taken
+         * from the budget first, as no frame can be drawn without it.
+         */
+        private void resizeFrameBitmap() {
+            synchronized (mFrameLock) {
+                if (mGeometry.isEmpty()) {
+                    mFrameBitmap = null;
+                    mBitmapBudget.release("frame");
+                    return;
+                }
+                mFrameBitmap = mBitmapBudget.obtainRequired("frame", mFrameBitmap,
+                        mGeometry.width, mGeometry.height, Bitmap.Config.ARGB_8888);
+                mFrameCanvas.setBitmap(mFrameBitmap);
+            }
+        }
+
+        /**
+         * Rasterizes the static part of the dial into {@link #mDialBitmap}, with the
+         * complications on top. The dial only depends on the surface size, ambient mode, mute
+         * mode and the complications, so this is called whenever one of those changes instead of
+         * redrawing the ticks every frame. Only the dial itself is shared with other engines;
+         * the complications are this engine's own, so they are drawn on a copy of it.
+         * <p>
+         * The dial is opaque, so both are RGB_565. If they don't fit in the budget, the dial is
+         * drawn directly every frame instead.
+         */
+        private void rebuildDialLayer() {
+            if (mGeometry.isEmpty()) {
+                return;
+            }
+            final int width = mGeometry.width;
+            final int height = mGeometry.height;
+            final Bitmap.Config config = Bitmap.Config.RGB_565;
+            final String key = assetKey("dial");
+            Bitmap dial = mAssetHolder.acquire("dial", key);
+            if (dial == null) {
+                if (!BitmapBudget.fits(BitmapBudget.byteCount(width, height, config))) {
+                    dropDialLayer();
+                    return;
+                }
+                dial = Bitmap.createBitmap(width, height, config);
+                drawDial(new Canvas(dial));
+                dial = mAssetHolder.add("dial", key, dial);
+            }
+            if (!hasComplications()) {
+                mDialBitmap = dial;
+                mComposedDialBitmap = null;
+                mBitmapBudget.release("composedDial");
+                return;
+            }
+            mComposedDialBitmap = mBitmapBudget.obtain("composedDial", mComposedDialBitmap,
+                    width, height, config);
+            if (mComposedDialBitmap == null) {
+                dropDialLayer();
+                return;
+            }
+            final Canvas canvas = new Canvas(mComposedDialBitmap);
+            canvas.drawBitmap(dial, 0, 0, null);
+            drawComplications(canvas);
+            mDialBitmap = mComposedDialBitmap;
+        }
+
+        private void dropDialLayer() {
+            mDialBitmap = null;
+            mComposedDialBitmap = null;
+            mAssetHolder.release("dial");
+            mBitmapBudget.release("composedDial");
+            logOverBudget("dial");
+        }
 
+        /**
+         * Logs that a cache is drawn directly because its bitmap doesn't fit in the budget.
+         */
+        private void logOverBudget(String cache) {
+            Log.w(TAG, String.format(Locale.US,
+                    "Drawing the %s directly, bitmaps hold %d KB of a %d KB budget", cache,
+                    BitmapBudget.getHeldBytes() / 1024, BitmapBudget.getBudgetBytes() / 1024));
+        }
+
+        private boolean hasComplications() {
+            for (ComplicationSlot slot : mComplicationSlots) {
+                if (!slot.getContent().isEmpty()) {
+                    return true;
+                }
             }
+            return false;
+        }
 
-            canvas.rotate(minutesRotation - hoursRotation, mCenterX, mCenterY);
+        private void drawComplications(Canvas canvas) {
+            final PaintSet paints = mPaintSet;
+            for (ComplicationSlot slot : mComplicationSlots) {
+                slot.draw(canvas, mFrame.ambient, paints.dateText, paints.dateBox);
+            }
+        }
 
-            canvas.drawRect(mCenterX - (mMinuteHandWidth / 2f),
-                    mCenterY + mMinuteHandBackLength,
-                    mCenterX + (mMinuteHandWidth / 2f),
-                    mCenterY - mMinuteHandFrontLength,
-                    mMainPaint);
+        /**
+         * Returns the disk cache key for an asset drawn with the current surface and style.
+         */
+        private String assetKey(String name) {
+            final FaceState frame = mFrame;
+            return String.format(Locale.US, "%s-%dx%d-%d-%08x-%s%s%s%s", name, mGeometry.width,
+                    mGeometry.height, mDensityDpi, frame.paints.theme.hashCode(),
+                    frame.ambient ? "ambient" : "interactive",
+                    frame.ambient && frame.lowBitAmbient ? "-lowbit" : "",
+                    frame.ambient && frame.burnInProtection ? "-burnin" : "",
+                    frame.muteMode ? "-mute" : "");
+        }
 
-            if (!mAmbient) {
-                canvas.drawRect(mCenterX - (mMinuteHandWidth / 6f),
-                        mCenterY + mMinuteHandBackLength,
-                        mCenterX + (mMinuteHandWidth / 6f),
-                        mCenterY - mMinuteHandHighlightLength,
-                        mSecondaryPaint);
+        /**
+         * Renders the hands and center circle into their sprites. Sprites are only used in
+         * interactive mode, so this does nothing in ambient mode or when they are up to date.
+         */
+        private void rebuildHandSprites() {
+            if (mFrame.ambient || mHandSpritesValid || mGeometry.isEmpty()) {
+                return;
             }
+            final float padding = SHADOW_EXTENT + HAND_BOUNDS_MARGIN;
 
+            final FaceGeometry geometry = mGeometry;
+            final float centerX = geometry.centerX;
+            final float centerY = geometry.centerY;
+            final CanvasRenderTarget target = mRenderTarget;
 
             /*
-             * Ensure the "seconds" hand is drawn only when we are in interactive mode.
-             * Otherwise, we only update the watch face once a minute.
+             * Sprites another engine uses are already in memory. The others are only drawn if
+             * they fit in the budget; over it the hands are drawn directly, see drawWatchFace().
              */
-            if (!mAmbient) {
-                canvas.rotate(secondsRotation - minutesRotation, mCenterX, mCenterY);
-                Path path = new Path();
-                path.moveTo(mCenterX, mCenterY - mSecondHandFrontLength);
-                path.lineTo(mCenterX - (mSecondHandWidth / 2), mCenterY + mSecondHandBackLength);
-                path.lineTo(mCenterX + (mSecondHandWidth / 2), mCenterY + mSecondHandBackLength);
-                path.lineTo(mCenterX, mCenterY - mSecondHandFrontLength);
-                canvas.drawPath(path, mSecondPaint);
+            String key = assetKey("center");
+            if (!mCenterSprite.load(mAssetHolder, "center", key, geometry.hourHandCircle,
+                    padding)) {
+                if (!spriteFits(geometry.hourHandCircle, geometry.hourHandCircle,
+                        geometry.hourHandCircle, padding)) {
+                    return;
+                }
+                mPainter.drawCenter(target.setCanvas(mCenterSprite.begin(geometry.hourHandCircle,
+                        geometry.hourHandCircle, geometry.hourHandCircle, padding, centerX,
+                        centerY)));
+                mCenterSprite.store(mAssetHolder, "center", key);
+            }
+            key = assetKey("hour");
+            if (!mHourHandSprite.load(mAssetHolder, "hour", key, geometry.hourHandFrontLength,
+                    padding)) {
+                if (!spriteFits(geometry.hourHandWidth / 2f, geometry.hourHandFrontLength,
+                        geometry.hourHandBackLength, padding)) {
+                    return;
+                }
+                mPainter.drawHourHand(target.setCanvas(mHourHandSprite.begin(
+                        geometry.hourHandWidth / 2f, geometry.hourHandFrontLength,
+                        geometry.hourHandBackLength, padding, centerX, centerY)));
+                mHourHandSprite.store(mAssetHolder, "hour", key);
+            }
+            key = assetKey("minute");
+            if (!mMinuteHandSprite.load(mAssetHolder, "minute", key,
+                    geometry.minuteHandFrontLength, padding)) {
+                if (!spriteFits(geometry.minuteHandWidth / 2f, geometry.minuteHandFrontLength,
+                        geometry.minuteHandBackLength, padding)) {
+                    return;
+                }
+                mPainter.drawMinuteHand(target.setCanvas(mMinuteHandSprite.begin(
+                        geometry.minuteHandWidth / 2f, geometry.minuteHandFrontLength,
+                        geometry.minuteHandBackLength, padding, centerX, centerY)));
+                mMinuteHandSprite.store(mAssetHolder, "minute", key);
+            }
+            key = assetKey("second");
+            if (!mSecondHandSprite.load(mAssetHolder, "second", key,
+                    geometry.secondHandFrontLength, padding)) {
+                if (!spriteFits(geometry.secondHandWidth / 2f, geometry.secondHandFrontLength,
+                        geometry.secondHandBackLength, padding)) {
+                    return;
+                }
+                mPainter.drawSecondHand(target.setCanvas(mSecondHandSprite.begin(
+                        geometry.secondHandWidth / 2f, geometry.secondHandFrontLength,
+                        geometry.secondHandBackLength, padding, centerX, centerY)));
+                mSecondHandSprite.store(mAssetHolder, "second", key);
+            }
+            mHandSpritesValid = true;
+            mHandSpritePaints = mPaintSet;
+        }
 
+        /**
+         * Returns whether a sprite described as for {@link HandSprite#begin} fits in the budget.
+         * If it doesn't, the sprites already loaded are released, as the hands are all drawn
+         * directly then.
+         */
+        private boolean spriteFits(float halfWidth, float frontLength, float backLength,
+                                   float padding) {
+            if (BitmapBudget.fits(HandSprite.byteCount(halfWidth, frontLength, backLength,
+                    padding))) {
+                return true;
             }
-            canvas.restore();
+            for (String role : SPRITE_ROLES) {
+                mAssetHolder.release(role);
+            }
+            logOverBudget("hands");
+            return false;
+        }
+
+        private void drawDial(Canvas canvas) {
+            if (mFrame.ambient) {
+                mAmbientRenderer.drawDial(mRenderTarget.setCanvas(canvas), mGeometry);
+            } else {
+                mPainter.drawDial(mRenderTarget.setCanvas(canvas));
+            }
+        }
+
+        private void drawWatchFace(Canvas canvas) {
+            final CanvasRenderTarget target = mRenderTarget.setCanvas(canvas);
+            mPainter.drawBattery(target, mFrame.displayedBatteryPercent);
+            if (!mDateAtlasesReady || !mDateAtlas.draw(canvas, mDayOfMonth)) {
+                mPainter.drawDate(target, dayOfMonthString(mDayOfMonth));
+            }
+
+            final float secondsRotation = mSecondsRotation;
+            final float minutesRotation = mMinutesRotation;
+            final float hoursRotation = mHoursRotation;
+
+            final float centerX = mGeometry.centerX;
+            final float centerY = mGeometry.centerY;
+
+            if (mHandSpritesValid) {
+                mCenterSprite.draw(canvas, centerX, centerY, 0, mSpritePaint);
+                mHourHandSprite.draw(canvas, centerX, centerY, hoursRotation, mSpritePaint);
+                mMinuteHandSprite.draw(canvas, centerX, centerY, minutesRotation, mSpritePaint);
+                mSecondHandSprite.draw(canvas, centerX, centerY, secondsRotation, mSpritePaint);
+                return;
+            }
+            mPainter.drawHands(target, hoursRotation, minutesRotation, secondsRotation);
         }
 
         @Override
         public void onVisibilityChanged(boolean visible) {
             super.onVisibilityChanged(visible);
 
-            if (visible) {
-                registerReceiver();
-                /* Update time zone in case it changed while we weren't visible. */
-                mCalendar.setTimeZone(TimeZone.getDefault());
-                invalidate();
-            } else {
+            if (!visible) {
                 unregisterReceiver();
+            } else if (mDeferredInitDone) {
+                registerReceiver();
+            }
+            if (mReplayer == null) {
+                if (visible) {
+                    /* Update time zone in case it changed while we weren't visible. */
+                    handleTimeZoneChanged(TimeZone.getDefault());
+                }
+                handleVisibilityChanged(visible);
+            }
+            if (!visible) {
+                writeInputTrace();
+            }
+        }
+
+        @Override
+        public void handleVisibilityChanged(boolean visible) {
+            trace(InputTrace.VISIBILITY, visible ? 1 : 0);
+            mVisible = visible;
+            publishState();
+            if (visible) {
+                requestFrame();
+            } else if (BuildConfig.FRAME_STATS) {
+                synchronized (mSurfaceLock) {
+                    Log.d(TAG, "Frame stats: " + mFrameStats);
+                }
             }
 
             /* Check and trigger whether or not timer should be running (only in active mode). */
@@ -630,6 +1612,12 @@ public class SimpletonWatchFace extends CanvasWatchFaceService {
             SimpletonWatchFace.this.registerReceiver(mBatteryLevelReceiver, ifilter);
         }
 
+        private float getBatteryPercent(Intent intent) {
+            final int level = intent.getIntExtra(BatteryManager.EXTRA_LEVEL, -1);
+            final int scale = intent.getIntExtra(BatteryManager.EXTRA_SCALE, -1);
+            return scale != 0 ? level / (float) scale : 0;
+        }
+
         private void unregisterReceiver() {
             if (!mRegisteredReceiver) {
                 return;
@@ -639,13 +1627,39 @@ public class SimpletonWatchFace extends CanvasWatchFaceService {
             SimpletonWatchFace.this.unregisterReceiver(mBatteryLevelReceiver);
         }
 
+        /**
+         * Publishes the inputs after one changed visibly. While the timer is running the next
+         * timer update draws the change, and since the state changed it draws a full frame;
+         * otherwise changes that arrive together are batched into a single frame.
+         */
+        private void requestRedraw() {
+            publishState();
+            if (!shouldTimerBeRunning()) {
+                requestFrame();
+            }
+        }
+
+        /**
+         * Asks the render thread for a full frame, unless one is already pending. While a trace
+         * is replayed, frames are only drawn where the trace has them.
+         */
+        private void requestFrame() {
+            if (mReplayer == null && !mUpdateTimeHandler.hasMessages(MSG_DRAW_FRAME)) {
+                mUpdateTimeHandler.sendEmptyMessage(MSG_DRAW_FRAME);
+            }
+        }
+
         /**
          * Starts/stops the {@link #mUpdateTimeHandler} timer based on the state of the watch face.
          */
         private void updateTimer() {
             mUpdateTimeHandler.removeMessages(MSG_UPDATE_TIME);
+            mUpdateTimeHandler.removeMessages(MSG_STOP_FRAMES);
+            mNextUpdateTimeMs = 0;
             if (shouldTimerBeRunning()) {
                 mUpdateTimeHandler.sendEmptyMessage(MSG_UPDATE_TIME);
+            } else {
+                mUpdateTimeHandler.sendEmptyMessage(MSG_STOP_FRAMES);
             }
         }
 
@@ -654,19 +1668,72 @@ public class SimpletonWatchFace extends CanvasWatchFaceService {
          * should only run in active mode.
          */
         private boolean shouldTimerBeRunning() {
-            return isVisible() && !mAmbient;
+            return mVisible && !mAmbient && mReplayer == null;
         }
 
         /**
-         * Handle updating the time periodically in interactive mode.
+         * Stops the vsync frames, if they were started. Called on the render thread.
+         */
+        private void stopFrameScheduler() {
+            if (mFrameScheduler != null) {
+                mFrameScheduler.stop();
+            }
+        }
+
+        /**
+         * Handle updating the time periodically in interactive mode, on the render thread. From
+         * API 16 this hands over to {@link #mFrameScheduler}, which draws in {@link #onFrame}.
+         * Otherwise the update rate is picked by {@link #mFrameRateGovernor}, and is re-evaluated
+         * on every update. Only the region swept by the hands is repainted when possible.
          */
         private void handleUpdateTimeMessage() {
-            invalidate();
-            if (shouldTimerBeRunning()) {
-                long timeMs = System.currentTimeMillis();
-                long delayMs = INTERACTIVE_UPDATE_RATE_MS
-                        - (timeMs % INTERACTIVE_UPDATE_RATE_MS);
-                mUpdateTimeHandler.sendEmptyMessageDelayed(MSG_UPDATE_TIME, delayMs);
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+                if (mFrameScheduler == null) {
+                    mFrameScheduler = new FrameScheduler(mRefreshRate, this);
+                }
+                mFrameScheduler.start();
+                return;
+            }
+
+            final FaceState state = mState;
+            synchronized (mSurfaceLock) {
+                long updateRateMs = mFrameRateGovernor.getUpdateRateMs();
+                if (BuildConfig.FRAME_STATS && mNextUpdateTimeMs != 0) {
+                    mFrameStats.recordUpdate(mClock.currentTimeMillis() - mNextUpdateTimeMs,
+                            updateRateMs);
+                }
+
+                mFrameRateGovernor.update(state.batteryPercent, state.muteMode, state.visible);
+                drawFrame(true, mClock.currentTimeMillis());
+                if (state.visible && !state.ambient && mReplayer == null) {
+                    updateRateMs = mFrameRateGovernor.getUpdateRateMs();
+                    long timeMs = mClock.currentTimeMillis();
+                    long delayMs = updateRateMs - (timeMs % updateRateMs);
+                    mNextUpdateTimeMs = timeMs + delayMs;
+                    mUpdateTimeHandler.sendEmptyMessageDelayed(MSG_UPDATE_TIME, delayMs);
+                }
+            }
+        }
+
+        /**
+         * Draws an interactive frame on vsync, for the time it will be presented at.
+         */
+        @Override
+        public long onFrame(long presentationTimeMs, long latenessNanos) {
+            final FaceState state = mState;
+            /* While a trace is replayed, only the replayer draws interactive frames. */
+            if (!state.visible || state.ambient || mReplayer != null) {
+                return 0;
+            }
+            synchronized (mSurfaceLock) {
+                if (BuildConfig.FRAME_STATS) {
+                    mFrameStats.recordFrameLateness(latenessNanos,
+                            mFrameScheduler.getFrameIntervalNanos());
+                }
+                mFrameRateGovernor.update(state.batteryPercent, state.muteMode, state.visible);
+                drawFrame(true, presentationTimeMs);
+                mFrameScheduler.setUpdateRateIsMinimum(mFrameRateGovernor.isMotionPaced());
+                return mFrameRateGovernor.getUpdateRateMs();
             }
         }
     }
@@ -0,0 +1,34 @@
+package com.cybermats.cleaner;
+
+import android.app.Activity;
+import android.os.Bundle;
+import android.view.View;
+import android.widget.AdapterView;
+import android.widget.ArrayAdapter;
+import android.widget.ListView;
+
+/**
+ * Lets the user pick the face's colour theme, from the watch face picker. The running engines
+ * listen for the change and swap in the new theme's paints.
+ */
+public class ThemeConfigActivity extends Activity {
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+
+        final String[] names = getResources().getStringArray(R.array.theme_names);
+        final ListView list = new ListView(this);
+        list.setChoiceMode(ListView.CHOICE_MODE_SINGLE);
+        list.setAdapter(new ArrayAdapter<>(this,
+                android.R.layout.simple_list_item_single_choice, names));
+        list.setItemChecked(ThemeSettings.getSelectedIndex(this), true);
+        list.setOnItemClickListener(new AdapterView.OnItemClickListener() {
+            @Override
+            public void onItemClick(AdapterView<?> parent, View view, int position, long id) {
+                ThemeSettings.setSelectedIndex(ThemeConfigActivity.this, position);
+                finish();
+            }
+        });
+        setContentView(list);
+    }
+}
@@ -0,0 +1,61 @@
+package com.cybermats.cleaner;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.content.res.Resources;
+import android.content.res.TypedArray;
+
+/**
+ * The colour theme the user picked in {@link ThemeConfigActivity}, stored as an index into the
+ * theme resource arrays. The themes' colours live in {@code R.array.theme_colors}, one array of
+ * {@link FaceTheme#COLOR_COUNT} colours per theme, named by {@code R.array.theme_names}.
+ */
+final class ThemeSettings {
+    static final String PREFERENCES_NAME = "simpleton_watch_face";
+    static final String KEY_THEME = "theme";
+
+    private ThemeSettings() {
+    }
+
+    static SharedPreferences getPreferences(Context context) {
+        return context.getSharedPreferences(PREFERENCES_NAME, Context.MODE_PRIVATE);
+    }
+
+    static int getSelectedIndex(Context context) {
+        return getPreferences(context).getInt(KEY_THEME, 0);
+    }
+
+    static void setSelectedIndex(Context context, int index) {
+        getPreferences(context).edit().putInt(KEY_THEME, index).apply();
+    }
+
+    /**
+     * Loads the selected theme, or the default one if the selection is not a theme.
+     */
+    static FaceTheme loadSelected(Context context) {
+        final Resources resources = context.getResources();
+        final int index = getSelectedIndex(context);
+        final TypedArray themes = resources.obtainTypedArray(R.array.theme_colors);
+        try {
+            if (index < 0 || index >= themes.length()) {
+                return FaceTheme.DEFAULT;
+            }
+            final TypedArray colors =
+                    resources.obtainTypedArray(themes.getResourceId(index, 0));
+            try {
+                if (colors.length() != FaceTheme.COLOR_COUNT) {
+                    return FaceTheme.DEFAULT;
+                }
+                final int[] values = new int[FaceTheme.COLOR_COUNT];
+                for (int i = 0; i < values.length; i++) {
+                    values[i] = colors.getColor(i, 0);
+                }
+                return new FaceTheme(values);
+            } finally {
+                colors.recycle();
+            }
+        } finally {
+            themes.recycle();
+        }
+    }
+}
@@ -0,0 +1,188 @@
+package com.cybermats.cleaner;
+
+import android.os.Handler;
+import android.util.Log;
+
+import java.util.Locale;
+import java.util.SimpleTimeZone;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Feeds a recorded {@link InputTrace} into an engine as fast as it can draw, and reports how many
+ * frames it drew and how long drawing them took. While replaying, the replayer is the engine's
+ * {@link FaceClock}, showing the time of the event being replayed, so that the same trace always
+ * draws the same frames and the results of two runs can be compared.
+ * <p>
+ * Frames are drawn on the render handler's thread, where the engine draws its live frames, and
+ * the other inputs are delivered on the input handler's thread, where the framework delivers
+ * them. Replaying waits for the inputs to be handled before it draws the next frame, so that each
+ * frame sees the same inputs on every run. Frames are drawn in slices so that the render thread
+ * stays responsive.
+ */
+class TraceReplayer implements FaceClock, Runnable {
+    private static final String TAG = "TraceReplayer";
+
+    /* How long one slice of events may take before the rest is posted again. */
+    private static final long SLICE_NANOS = TimeUnit.MILLISECONDS.toNanos(8);
+
+    interface Target {
+        void handleAmbientModeChanged(boolean ambient);
+
+        void handleVisibilityChanged(boolean visible);
+
+        void handleBatteryChanged(float batteryPercent);
+
+        void handleTimeZoneChanged(TimeZone timeZone);
+
+        void handleMuteModeChanged(boolean muteMode);
+
+        void handleTimeTick();
+
+        /**
+         * Draws a frame for {@code timeMs}, immediately, on the render handler's thread.
+         *
+         * @param partial whether only the region swept by the hands may be repainted.
+         */
+        void handleFrame(boolean partial, long timeMs);
+
+        /**
+         * Called once the whole trace has been replayed, on the input handler's thread.
+         */
+        void onReplayFinished();
+    }
+
+    private final InputTrace mTrace;
+    private final Target mTarget;
+    private final Handler mRenderHandler;
+    private final Handler mInputHandler;
+    private final Runnable mDeliverInputs = new Runnable() {
+        @Override
+        public void run() {
+            deliverInputs();
+        }
+    };
+    /* Read on both threads, and by the render thread when it prepares an ambient frame. */
+    private volatile long mTimeMs;
+    private volatile boolean mCancelled;
+    /*
+     * Only touched by the thread whose turn it is: the handlers hand the replay over between
+     * the threads, which publishes these.
+     */
+    private int mNext;
+    private int mFrames;
+    private long mRenderNanos;
+    private long mStartNanos;
+
+    /**
+     * @param renderHandler handler on the thread the target draws its frames on.
+     * @param inputHandler  handler on the thread the target gets its other inputs on.
+     */
+    TraceReplayer(InputTrace trace, Target target, Handler renderHandler,
+                  Handler inputHandler) {
+        mTrace = trace;
+        mTarget = target;
+        mRenderHandler = renderHandler;
+        mInputHandler = inputHandler;
+        mTimeMs = trace.size() > 0 ? trace.getTimeMs(0) : System.currentTimeMillis();
+    }
+
+    @Override
+    public long currentTimeMillis() {
+        return mTimeMs;
+    }
+
+    /**
+     * Puts the target in the state the recording started from, and starts replaying. Called on
+     * the input handler's thread.
+     */
+    void start() {
+        mStartNanos = System.nanoTime();
+        for (byte type = 0; type < InputTrace.TIME_TICK; type++) {
+            if (mTrace.hasBaseValue(type)) {
+                deliver(type, mTrace.getBaseValue(type));
+            }
+        }
+        mInputHandler.post(mDeliverInputs);
+    }
+
+    void cancel() {
+        mCancelled = true;
+        mRenderHandler.removeCallbacks(this);
+        mInputHandler.removeCallbacks(mDeliverInputs);
+    }
+
+    /**
+     * Draws the frames up to the next input, on the render handler's thread.
+     */
+    @Override
+    public void run() {
+        if (mCancelled) {
+            return;
+        }
+        final long sliceEndNanos = System.nanoTime() + SLICE_NANOS;
+        while (mNext < mTrace.size() && mTrace.getType(mNext) == InputTrace.FRAME) {
+            mTimeMs = mTrace.getTimeMs(mNext);
+            deliver(InputTrace.FRAME, mTrace.getValue(mNext));
+            mNext++;
+            if (System.nanoTime() >= sliceEndNanos) {
+                mRenderHandler.post(this);
+                return;
+            }
+        }
+        mInputHandler.post(mDeliverInputs);
+    }
+
+    /**
+     * Delivers the inputs up to the next frame, on the input handler's thread, and hands back to
+     * the render thread, or finishes at the end of the trace.
+     */
+    private void deliverInputs() {
+        if (mCancelled) {
+            return;
+        }
+        while (mNext < mTrace.size() && mTrace.getType(mNext) != InputTrace.FRAME) {
+            mTimeMs = mTrace.getTimeMs(mNext);
+            deliver(mTrace.getType(mNext), mTrace.getValue(mNext));
+            mNext++;
+        }
+        if (mNext < mTrace.size()) {
+            mRenderHandler.post(this);
+            return;
+        }
+        Log.i(TAG, String.format(Locale.US,
+                "Replayed %d events in %d ms: %d frames, %.2f ms rendering, %.3f ms per frame",
+                mTrace.size(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - mStartNanos),
+                mFrames, mRenderNanos / 1e6, mFrames > 0 ? mRenderNanos / 1e6 / mFrames : 0.0));
+        mTarget.onReplayFinished();
+    }
+
+    private void deliver(byte type, int value) {
+        switch (type) {
+            case InputTrace.AMBIENT:
+                mTarget.handleAmbientModeChanged(value != 0);
+                break;
+            case InputTrace.VISIBILITY:
+                mTarget.handleVisibilityChanged(value != 0);
+                break;
+            case InputTrace.BATTERY:
+                mTarget.handleBatteryChanged(Float.intBitsToFloat(value));
+                break;
+            case InputTrace.TIME_ZONE:
+                mTarget.handleTimeZoneChanged(new SimpleTimeZone(value, "Trace"));
+                break;
+            case InputTrace.MUTE:
+                mTarget.handleMuteModeChanged(value != 0);
+                break;
+            case InputTrace.TIME_TICK:
+                mTarget.handleTimeTick();
+                break;
+            case InputTrace.FRAME:
+                final long startNanos = System.nanoTime();
+                mTarget.handleFrame(value != 0, mTimeMs);
+                mRenderNanos += System.nanoTime() - startNanos;
+                mFrames++;
+                break;
+        }
+    }
+}
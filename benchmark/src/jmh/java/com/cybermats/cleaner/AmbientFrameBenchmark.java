@@ -0,0 +1,62 @@
+package com.cybermats.cleaner;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.awt.image.BufferedImage;
+import java.util.TimeZone;
+
+/**
+ * The work left between onTimeTick and the ambient frame being drawn: the whole frame, as the
+ * engine did before it rendered the next ambient frame ahead, and a blit of the frame rendered
+ * ahead, in RGB_565 like the engine's.
+ */
+@State(Scope.Thread)
+public class AmbientFrameBenchmark {
+    private static final long MINUTE_MS = 60000;
+
+    @Param({"320", "454"})
+    public int size;
+
+    private DesktopFace mFace;
+    private Java2dRenderTarget mTarget;
+    private BufferedImage mPrerendered;
+    private long mTimeMs;
+
+    @Setup
+    public void setUp() {
+        mFace = new DesktopFace(size, TimeZone.getTimeZone("Europe/Stockholm"));
+        mTarget = new Java2dRenderTarget(mFace.createImage());
+        mTimeMs = 1700000000000L;
+
+        final BufferedImage frame = mFace.createImage();
+        final Java2dRenderTarget target = new Java2dRenderTarget(frame);
+        mFace.render(target, mTimeMs + MINUTE_MS, true, 0.8f);
+        target.dispose();
+        mPrerendered = new BufferedImage(frame.getWidth(), frame.getHeight(),
+                BufferedImage.TYPE_USHORT_565_RGB);
+        mPrerendered.createGraphics().drawImage(frame, 0, 0, null);
+    }
+
+    @TearDown
+    public void tearDown() {
+        mTarget.dispose();
+    }
+
+    @Benchmark
+    public Java2dRenderTarget wakeDrawn() {
+        mTimeMs += MINUTE_MS;
+        mFace.render(mTarget, mTimeMs, true, 0.8f);
+        return mTarget;
+    }
+
+    @Benchmark
+    public Java2dRenderTarget wakePrerendered() {
+        mTarget.drawImage(mPrerendered, 0, 0);
+        return mTarget;
+    }
+}
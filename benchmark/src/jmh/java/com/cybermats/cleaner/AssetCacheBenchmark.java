@@ -0,0 +1,102 @@
+package com.cybermats.cleaner;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.TimeZone;
+
+/**
+ * The assets a new engine needs before its first frame: the dial layer and the hand sprites
+ * rasterized with their shadows, as on a cold start, and read back from raw pixel files through a
+ * memory map, as the app's AssetDiskCache does on a warm one. The files are in the page cache,
+ * like the app's usually are.
+ */
+@State(Scope.Thread)
+public class AssetCacheBenchmark {
+    /* Magic, width and height, like AssetDiskCache's header without the config. */
+    private static final int HEADER_BYTES = 3 * 4;
+    private static final int MAGIC = 0x53494d50;
+
+    @Param({"320", "454"})
+    public int size;
+
+    private DesktopFace mFace;
+    private File[] mFiles;
+
+    @Setup
+    public void setUp() throws IOException {
+        mFace = new DesktopFace(size, TimeZone.getTimeZone("Europe/Stockholm"));
+        final BufferedImage[] images = new DesktopLayers(mFace).getImages();
+        mFiles = new File[images.length];
+        for (int i = 0; i < images.length; i++) {
+            mFiles[i] = File.createTempFile("face-asset", ".bin");
+            write(mFiles[i], images[i]);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        for (File file : mFiles) {
+            file.delete();
+        }
+    }
+
+    @Benchmark
+    public DesktopLayers cold() {
+        return new DesktopLayers(mFace);
+    }
+
+    @Benchmark
+    public BufferedImage[] warm() throws IOException {
+        final BufferedImage[] images = new BufferedImage[mFiles.length];
+        for (int i = 0; i < mFiles.length; i++) {
+            images[i] = read(mFiles[i]);
+        }
+        return images;
+    }
+
+    private static void write(File file, BufferedImage image) throws IOException {
+        final int[] pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+        final RandomAccessFile output = new RandomAccessFile(file, "rw");
+        try {
+            final long length = HEADER_BYTES + 4L * pixels.length;
+            output.setLength(length);
+            final MappedByteBuffer buffer =
+                    output.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, length);
+            buffer.putInt(MAGIC).putInt(image.getWidth()).putInt(image.getHeight());
+            buffer.asIntBuffer().put(pixels);
+        } finally {
+            output.close();
+        }
+    }
+
+    private static BufferedImage read(File file) throws IOException {
+        final RandomAccessFile input = new RandomAccessFile(file, "r");
+        try {
+            final FileChannel channel = input.getChannel();
+            final MappedByteBuffer buffer =
+                    channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.getInt() != MAGIC) {
+                throw new IOException("Not an asset: " + file);
+            }
+            final BufferedImage image = new BufferedImage(buffer.getInt(), buffer.getInt(),
+                    BufferedImage.TYPE_INT_ARGB);
+            buffer.asIntBuffer()
+                    .get(((DataBufferInt) image.getRaster().getDataBuffer()).getData());
+            return image;
+        } finally {
+            input.close();
+        }
+    }
+}
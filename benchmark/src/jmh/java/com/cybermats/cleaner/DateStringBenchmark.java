@@ -0,0 +1,47 @@
+package com.cybermats.cleaner;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Locale;
+
+/**
+ * The date numeral: {@link #format} formats it on every frame, as the engine did at first, and
+ * {@link #cached} looks it up in the strings the engine formats once. {@link #formatMonth} is
+ * what formatting all of them costs, once per engine.
+ */
+@State(Scope.Thread)
+public class DateStringBenchmark {
+    private final String[] mDayOfMonthStrings = new String[32];
+    private int mDay;
+
+    @Setup
+    public void setUp() {
+        formatMonth();
+    }
+
+    @Benchmark
+    public String format() {
+        return String.format(Locale.getDefault(), "%d", nextDay());
+    }
+
+    @Benchmark
+    public String cached() {
+        return mDayOfMonthStrings[nextDay()];
+    }
+
+    @Benchmark
+    public String[] formatMonth() {
+        for (int day = 1; day < mDayOfMonthStrings.length; day++) {
+            mDayOfMonthStrings[day] = String.format(Locale.getDefault(), "%d", day);
+        }
+        return mDayOfMonthStrings;
+    }
+
+    private int nextDay() {
+        mDay = mDay % 31 + 1;
+        return mDay;
+    }
+}
@@ -0,0 +1,55 @@
+package com.cybermats.cleaner;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.TimeZone;
+
+/**
+ * Interactive frames with the shadows a device draws, with the dial drawn on every frame as the
+ * engine did before it cached it, and blitted from the {@link DesktopLayers} dial layer. The rest
+ * of the frame is drawn the same way in both.
+ */
+@State(Scope.Thread)
+public class DialLayerBenchmark {
+    private static final long FRAME_MS = 33;
+
+    @Param({"320", "454"})
+    public int size;
+
+    private DesktopFace mFace;
+    private DesktopLayers mLayers;
+    private Java2dRenderTarget mTarget;
+    private long mTimeMs;
+
+    @Setup
+    public void setUp() {
+        mFace = new DesktopFace(size, TimeZone.getTimeZone("Europe/Stockholm"));
+        mLayers = new DesktopLayers(mFace);
+        mTarget = new Java2dRenderTarget(mFace.createImage(), true);
+        mTimeMs = 1700000000000L;
+    }
+
+    @TearDown
+    public void tearDown() {
+        mTarget.dispose();
+    }
+
+    @Benchmark
+    public Java2dRenderTarget dialDrawn() {
+        mTimeMs += FRAME_MS;
+        mFace.render(mTarget, mTimeMs, false, 0.8f);
+        return mTarget;
+    }
+
+    @Benchmark
+    public Java2dRenderTarget dialCached() {
+        mTimeMs += FRAME_MS;
+        mLayers.draw(mTarget, mTimeMs, 0.8f);
+        return mTarget;
+    }
+}
@@ -0,0 +1,53 @@
+package com.cybermats.cleaner;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.TimeZone;
+
+/**
+ * Whole frames drawn from scratch with {@link DesktopFace}, interactive and ambient. Java2D is
+ * not the device's Canvas, so the time is only comparable between runs of this benchmark, but
+ * the allocations are those of the drawing code the app shares.
+ */
+@State(Scope.Thread)
+public class FrameBenchmark {
+    private static final long FRAME_MS = 33;
+
+    @Param({"320"})
+    public int size;
+
+    private DesktopFace mFace;
+    private Java2dRenderTarget mTarget;
+    private long mTimeMs;
+
+    @Setup
+    public void setUp() {
+        mFace = new DesktopFace(size, TimeZone.getTimeZone("Europe/Stockholm"));
+        mTarget = new Java2dRenderTarget(mFace.createImage());
+        mTimeMs = 1700000000000L;
+    }
+
+    @TearDown
+    public void tearDown() {
+        mTarget.dispose();
+    }
+
+    @Benchmark
+    public Java2dRenderTarget interactive() {
+        mTimeMs += FRAME_MS;
+        mFace.render(mTarget, mTimeMs, false, 0.8f);
+        return mTarget;
+    }
+
+    @Benchmark
+    public Java2dRenderTarget ambient() {
+        mTimeMs += FRAME_MS;
+        mFace.render(mTarget, mTimeMs, true, 0.8f);
+        return mTarget;
+    }
+}
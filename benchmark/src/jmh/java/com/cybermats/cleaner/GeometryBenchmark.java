@@ -0,0 +1,57 @@
+package com.cybermats.cleaner;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * The geometry computed when the surface changes: {@link FaceGeometry#update} with its tick
+ * marks, and the tick marks alone. {@link #tickTrig} computes the tick end points with a sine
+ * and a cosine per tick, as the engine did on every frame before {@link TickMarks}, as a
+ * baseline.
+ */
+@State(Scope.Thread)
+public class GeometryBenchmark {
+    @Param({"240", "320", "454"})
+    public int size;
+
+    private final FaceGeometry mGeometry = new FaceGeometry();
+    private final TickMarks mTickMarks = new TickMarks();
+    private final float[] mTicks = new float[TickMarks.POSITIONS * 4];
+
+    @Setup
+    public void setUp() {
+        mGeometry.update(size, size);
+    }
+
+    @Benchmark
+    public FaceGeometry update() {
+        mGeometry.update(size, size);
+        return mGeometry;
+    }
+
+    @Benchmark
+    public TickMarks tickMarks() {
+        final FaceGeometry g = mGeometry;
+        mTickMarks.update(g.centerX, g.centerY, g.outerTickRadius, g.innerSmallTickRadius,
+                g.innerLargeTickRadius, g.largeTickWidth);
+        return mTickMarks;
+    }
+
+    @Benchmark
+    public float[] tickTrig() {
+        final FaceGeometry g = mGeometry;
+        for (int i = 0; i < TickMarks.POSITIONS; i++) {
+            final double rotation = i * Math.PI * 2 / TickMarks.POSITIONS;
+            final float sin = (float) Math.sin(rotation);
+            final float cos = (float) Math.cos(rotation);
+            mTicks[i * 4] = g.centerX + sin * g.innerSmallTickRadius;
+            mTicks[i * 4 + 1] = g.centerY - cos * g.innerSmallTickRadius;
+            mTicks[i * 4 + 2] = g.centerX + sin * g.outerTickRadius;
+            mTicks[i * 4 + 3] = g.centerY - cos * g.outerTickRadius;
+        }
+        return mTicks;
+    }
+}
@@ -0,0 +1,58 @@
+package com.cybermats.cleaner;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Calendar;
+import java.util.TimeZone;
+
+/**
+ * The time math of every interactive frame: from the wall clock time to the rotation of each hand
+ * and the day of the month. {@link #calendar} is the {@link Calendar} based computation the engine
+ * used before {@link TimeModel}, as a baseline.
+ * <p>
+ * Each op advances the time by a smooth sweep frame, so that the fields really change.
+ */
+@State(Scope.Thread)
+public class HandAngleBenchmark {
+    private static final long FRAME_MS = 33;
+
+    private final TimeZone mTimeZone = TimeZone.getTimeZone("Europe/Stockholm");
+    private TimeModel mTimeModel;
+    private Calendar mCalendar;
+    private long mTimeMs;
+
+    @Setup
+    public void setUp() {
+        mTimeModel = new TimeModel(mTimeZone);
+        mCalendar = Calendar.getInstance(mTimeZone);
+        mTimeMs = 1700000000000L;
+    }
+
+    @Benchmark
+    public void timeModel(Blackhole blackhole) {
+        mTimeMs += FRAME_MS;
+        mTimeModel.setTime(mTimeMs);
+        blackhole.consume(mTimeModel.getSecondsRotation(false));
+        blackhole.consume(mTimeModel.getMinutesRotation());
+        blackhole.consume(mTimeModel.getHoursRotation());
+        blackhole.consume(mTimeModel.getDayOfMonth());
+    }
+
+    @Benchmark
+    public void calendar(Blackhole blackhole) {
+        mTimeMs += FRAME_MS;
+        mCalendar.setTimeInMillis(mTimeMs);
+        final float seconds =
+                mCalendar.get(Calendar.SECOND) + mCalendar.get(Calendar.MILLISECOND) / 1000f;
+        blackhole.consume(seconds * 6f);
+        blackhole.consume(mCalendar.get(Calendar.MINUTE) * 6f
+                + mCalendar.get(Calendar.SECOND) / 10f);
+        blackhole.consume(mCalendar.get(Calendar.HOUR) * 30 + mCalendar.get(Calendar.MINUTE) / 2f
+                + mCalendar.get(Calendar.SECOND) / 120f);
+        blackhole.consume(mCalendar.get(Calendar.DAY_OF_MONTH));
+    }
+}
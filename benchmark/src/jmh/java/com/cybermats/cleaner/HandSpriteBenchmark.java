@@ -0,0 +1,54 @@
+package com.cybermats.cleaner;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.TimeZone;
+
+/**
+ * Interactive frames over the dial layer, with the hands drawn as vectors with their shadows as
+ * the engine did before the hand sprites, and blitted from the {@link DesktopHandSprite}s with a
+ * rotation. The rest of the frame is drawn the same way in both.
+ */
+@State(Scope.Thread)
+public class HandSpriteBenchmark {
+    private static final long FRAME_MS = 33;
+
+    @Param({"320", "454"})
+    public int size;
+
+    private DesktopLayers mLayers;
+    private Java2dRenderTarget mTarget;
+    private long mTimeMs;
+
+    @Setup
+    public void setUp() {
+        final DesktopFace face = new DesktopFace(size, TimeZone.getTimeZone("Europe/Stockholm"));
+        mLayers = new DesktopLayers(face);
+        mTarget = new Java2dRenderTarget(face.createImage(), true);
+        mTimeMs = 1700000000000L;
+    }
+
+    @TearDown
+    public void tearDown() {
+        mTarget.dispose();
+    }
+
+    @Benchmark
+    public Java2dRenderTarget handsDrawn() {
+        mTimeMs += FRAME_MS;
+        mLayers.draw(mTarget, mTimeMs, 0.8f);
+        return mTarget;
+    }
+
+    @Benchmark
+    public Java2dRenderTarget handsSprites() {
+        mTimeMs += FRAME_MS;
+        mLayers.drawWithSprites(mTarget, mTimeMs, 0.8f);
+        return mTarget;
+    }
+}
@@ -0,0 +1,115 @@
+package com.cybermats.cleaner;
+
+/**
+ * Draws the face in ambient mode, with the ambient paints from {@link PaintSets}. The face spends
+ * most of the day in ambient mode, and on OLED displays every lit pixel costs power there, so
+ * everything is drawn as thin outlines: no filled blocks, no shadows, no center circle and no
+ * second hand.
+ * <p>
+ * Displays with low-bit ambient mode only have a few colours, so anti-aliasing is turned off and
+ * everything is pure white. Displays that need burn-in protection get the battery bar as an
+ * outline too, and the whole frame is moved by a few pixels every minute so that no pixel stays
+ * lit for long.
+ */
+class AmbientRenderer {
+    /* Burn-in protection offsets, in steps of BURN_IN_STEP_PX, visited one per minute. */
+    private static final int[] SHIFT_X = {0, 1, 1, 0, -1, -1, -1, 0, 1};
+    private static final int[] SHIFT_Y = {0, 0, 1, 1, 1, 0, -1, -1, -1};
+    private static final int BURN_IN_STEP_PX = 3;
+
+    private PaintSet mPaints;
+    private boolean mBurnInProtection;
+
+    /**
+     * Sets the ambient paints for the display's properties and mute mode, and whether the frame
+     * is moved for burn-in protection.
+     */
+    void setPaints(PaintSet paints, boolean burnInProtection) {
+        mPaints = paints;
+        mBurnInProtection = burnInProtection;
+    }
+
+    /**
+     * Returns how far the frame for {@code minute} is moved horizontally, in pixels.
+     */
+    int getShiftX(long minute) {
+        return mBurnInProtection ? SHIFT_X[(int) (minute % SHIFT_X.length)] * BURN_IN_STEP_PX : 0;
+    }
+
+    /**
+     * Returns how far the frame for {@code minute} is moved vertically, in pixels.
+     */
+    int getShiftY(long minute) {
+        return mBurnInProtection ? SHIFT_Y[(int) (minute % SHIFT_Y.length)] * BURN_IN_STEP_PX : 0;
+    }
+
+    /**
+     * Draws the static part of the face, the background and the ticks.
+     */
+    void drawDial(RenderTarget target, FaceGeometry geometry) {
+        final RenderPaint outline = mPaints.main;
+        target.drawColor(mPaints.backgroundColor);
+        target.drawLines(geometry.tickMarks.smallTicks, mPaints.smallTick);
+
+        final float centerX = geometry.centerX;
+        final float top = geometry.centerY - geometry.outerTickRadius;
+        final float bottom = geometry.centerY - geometry.innerLargeTickRadius;
+        final float width = geometry.twelveMarkerWidth;
+        target.drawRect(centerX - width / 2f, top, centerX + width / 2f, bottom, outline);
+        target.drawRect(centerX - width / 6f, top, centerX + width / 6f, bottom, outline);
+
+        target.drawPath(geometry.tickMarks.hourTickPath, outline);
+    }
+
+    /**
+     * Draws the battery bar on top of the dial.
+     */
+    void drawBattery(RenderTarget target, FaceGeometry geometry, float batteryPercent) {
+        final float centerX = geometry.centerX;
+        target.drawRect(centerX - geometry.largeTickWidth / 6f,
+                geometry.centerY - geometry.outerTickRadius
+                        + geometry.batteryBarOffset(batteryPercent),
+                centerX + geometry.largeTickWidth / 6f,
+                geometry.centerY - geometry.innerLargeTickRadius,
+                mPaints.battery);
+    }
+
+    void drawDate(RenderTarget target, FaceGeometry geometry, String date) {
+        FacePainter.drawDate(target, geometry, date, mPaints.dateText);
+    }
+
+    /**
+     * Draws the hour and minute hands at the given rotations, in degrees.
+     */
+    void drawHands(RenderTarget target, FaceGeometry geometry, float hoursRotation,
+                   float minutesRotation) {
+        final RenderPaint outline = mPaints.main;
+        final float centerX = geometry.centerX;
+        final float centerY = geometry.centerY;
+        target.save();
+        target.rotate(hoursRotation, centerX, centerY);
+        target.drawRect(centerX - geometry.hourHandWidth / 2f,
+                centerY - geometry.hourHandFrontLength,
+                centerX + geometry.hourHandWidth / 2f,
+                centerY + geometry.hourHandBackLength, outline);
+        target.rotate(minutesRotation - hoursRotation, centerX, centerY);
+        target.drawRect(centerX - geometry.minuteHandWidth / 2f,
+                centerY - geometry.minuteHandFrontLength,
+                centerX + geometry.minuteHandWidth / 2f,
+                centerY + geometry.minuteHandBackLength, outline);
+        target.restore();
+    }
+
+    /**
+     * Counts the pixels among {@code length} ARGB pixels from {@code offset} that are not black.
+     */
+    static int countLitPixels(int[] pixels, int offset, int length) {
+        int lit = 0;
+        for (int i = offset; i < offset + length; i++) {
+            if ((pixels[i] & 0x00ffffff) != 0) {
+                lit++;
+            }
+        }
+        return lit;
+    }
+}
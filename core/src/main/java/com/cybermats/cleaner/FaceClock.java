@@ -0,0 +1,17 @@
+package com.cybermats.cleaner;
+
+/**
+ * Where the engine gets the wall clock time it draws the face for. Normally the system clock; a
+ * trace replay substitutes the times of the recorded events, so that the same trace always draws
+ * the same frames.
+ */
+interface FaceClock {
+    FaceClock SYSTEM = new FaceClock() {
+        @Override
+        public long currentTimeMillis() {
+            return System.currentTimeMillis();
+        }
+    };
+
+    long currentTimeMillis();
+}
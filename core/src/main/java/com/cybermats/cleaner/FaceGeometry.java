@@ -0,0 +1,167 @@
+package com.cybermats.cleaner;
+
+import java.util.Arrays;
+
+/**
+ * Sizes and positions of everything on the face, derived from the surface size. The face is
+ * designed on a {@link #FACE_DIAMETER} unit dial and scaled to the screen, and all values here
+ * are in pixels.
+ * <p>
+ * Shared by the Canvas and OpenGL engines so that both draw the same face.
+ */
+class FaceGeometry {
+    static final float FACE_DIAMETER = 29f;
+    private static final float FACE_RADIUS = FACE_DIAMETER / 2f;
+    private static final float OUTER_TICK_RADIUS = FACE_RADIUS - 1f;
+    private static final float INNER_SMALL_TICK_RADIUS = OUTER_TICK_RADIUS - 1f;
+    private static final float INNER_LARGE_TICK_RADIUS = OUTER_TICK_RADIUS - 4f;
+    private static final float LARGE_TICK_WIDTH = 0.5f;
+
+    private static final float SECOND_BACK_RADIUS = 2.5f;
+    private static final float SECOND_FRONT_RADIUS = 13f;
+    private static final float SECOND_WIDTH = 0.5f;
+    private static final float MINUTE_BACK_RADIUS = 2.5f;
+    private static final float MINUTE_FRONT_RADIUS = 12f;
+    private static final float MINUTE_HIGHLIGHT_RADIUS = 6f;
+    private static final float MINUTE_WIDTH = .5f;
+    private static final float HOUR_BACK_RADIUS = 2.5f;
+    private static final float HOUR_FRONT_RADIUS = 8f;
+    private static final float HOUR_HIGHLIGHT_RADIUS = 4f;
+    private static final float HOUR_WIDTH = .5f;
+    private static final float HOUR_CIRCLE = 1f;
+
+    private static final float DATE_TEXT_LEFT = 8.5f;
+    private static final float DATE_TEXT_WIDTH = 4f;
+    private static final float DATE_TEXT_HEIGHT = 3f;
+
+    /* Changes whenever one of the constants above does, for versioning pre-rendered assets. */
+    static final int CONSTANTS_HASH = Arrays.hashCode(new float[]{
+            FACE_DIAMETER, OUTER_TICK_RADIUS, INNER_SMALL_TICK_RADIUS, INNER_LARGE_TICK_RADIUS,
+            LARGE_TICK_WIDTH, SECOND_BACK_RADIUS, SECOND_FRONT_RADIUS, SECOND_WIDTH,
+            MINUTE_BACK_RADIUS, MINUTE_FRONT_RADIUS, MINUTE_HIGHLIGHT_RADIUS, MINUTE_WIDTH,
+            HOUR_BACK_RADIUS, HOUR_FRONT_RADIUS, HOUR_HIGHLIGHT_RADIUS, HOUR_WIDTH, HOUR_CIRCLE,
+            DATE_TEXT_LEFT, DATE_TEXT_WIDTH, DATE_TEXT_HEIGHT});
+
+    int width;
+    int height;
+    float centerX;
+    float centerY;
+
+    float outerTickRadius;
+    float innerSmallTickRadius;
+    float innerLargeTickRadius;
+    float largeTickWidth;
+    /* The twelve o'clock marker is wider than the other hour ticks. */
+    float twelveMarkerWidth;
+
+    float secondHandFrontLength;
+    float secondHandBackLength;
+    float secondHandWidth;
+    float minuteHandFrontLength;
+    float minuteHandBackLength;
+    float minuteHandHighlightLength;
+    float minuteHandWidth;
+    float hourHandFrontLength;
+    float hourHandBackLength;
+    float hourHandHighlightLength;
+    float hourHandWidth;
+    float hourHandCircle;
+
+    float dateTextLeft;
+    float dateTextTop;
+    float dateTextRight;
+    float dateTextBottom;
+
+    /*
+     * Complication slots, the same size as the date box. The left one mirrors the date box, the
+     * bottom one is the date box turned down to six o'clock.
+     */
+    float leftSlotLeft;
+    float leftSlotTop;
+    float leftSlotRight;
+    float leftSlotBottom;
+    float bottomSlotLeft;
+    float bottomSlotTop;
+    float bottomSlotRight;
+    float bottomSlotBottom;
+
+    final TickMarks tickMarks = new TickMarks();
+
+    boolean isEmpty() {
+        return width <= 0 || height <= 0;
+    }
+
+    void update(int width, int height) {
+        this.width = width;
+        this.height = height;
+
+        /*
+         * Find the coordinates of the center point on the screen, and ignore the window
+         * insets, so that, on round watches with a "chin", the watch face is centered on the
+         * entire screen, not just the usable portion.
+         */
+        centerX = width / 2f;
+        centerY = height / 2f;
+
+        /*
+         * Calculate lengths of different hands based on watch screen size.
+         */
+        float radius = width / 2f;
+        outerTickRadius = radius * (OUTER_TICK_RADIUS / FACE_RADIUS);
+        innerSmallTickRadius = radius * (INNER_SMALL_TICK_RADIUS / FACE_RADIUS);
+        innerLargeTickRadius = radius * (INNER_LARGE_TICK_RADIUS / FACE_RADIUS);
+        largeTickWidth = radius * LARGE_TICK_WIDTH / FACE_RADIUS;
+        twelveMarkerWidth = largeTickWidth * 5 / 3f;
+
+        secondHandFrontLength = radius * (SECOND_FRONT_RADIUS / FACE_RADIUS);
+        secondHandBackLength = radius * (SECOND_BACK_RADIUS / FACE_RADIUS);
+        secondHandWidth = radius * (SECOND_WIDTH / FACE_RADIUS);
+
+        minuteHandFrontLength = radius * (MINUTE_FRONT_RADIUS / FACE_RADIUS);
+        minuteHandBackLength = radius * (MINUTE_BACK_RADIUS / FACE_RADIUS);
+        minuteHandHighlightLength = radius * (MINUTE_HIGHLIGHT_RADIUS / FACE_RADIUS);
+        minuteHandWidth = radius * (MINUTE_WIDTH / FACE_RADIUS);
+
+        hourHandFrontLength = radius * (HOUR_FRONT_RADIUS / FACE_RADIUS);
+        hourHandBackLength = radius * (HOUR_BACK_RADIUS / FACE_RADIUS);
+        hourHandHighlightLength = radius * (HOUR_HIGHLIGHT_RADIUS / FACE_RADIUS);
+        hourHandWidth = radius * (HOUR_WIDTH / FACE_RADIUS);
+        hourHandCircle = radius * (HOUR_CIRCLE / FACE_RADIUS);
+
+        final float textLeft = radius * (DATE_TEXT_LEFT / FACE_RADIUS);
+        final float textWidth = radius * (DATE_TEXT_WIDTH / FACE_RADIUS);
+        final float textHeight = radius * (DATE_TEXT_HEIGHT / FACE_RADIUS);
+        dateTextLeft = centerX + textLeft;
+        dateTextTop = centerY - textHeight / 2f;
+        dateTextRight = centerX + textLeft + textWidth;
+        dateTextBottom = centerY + textHeight / 2f;
+
+        leftSlotLeft = centerX - textLeft - textWidth;
+        leftSlotTop = dateTextTop;
+        leftSlotRight = centerX - textLeft;
+        leftSlotBottom = dateTextBottom;
+        final float bottomSlotCenterY = centerY + textLeft + textWidth / 2f;
+        bottomSlotLeft = centerX - textWidth / 2f;
+        bottomSlotTop = bottomSlotCenterY - textHeight / 2f;
+        bottomSlotRight = centerX + textWidth / 2f;
+        bottomSlotBottom = bottomSlotCenterY + textHeight / 2f;
+
+        tickMarks.update(centerX, centerY, outerTickRadius, innerSmallTickRadius,
+                innerLargeTickRadius, largeTickWidth);
+    }
+
+    /**
+     * Returns how far the battery bar, drawn inside the twelve o'clock marker, is from the top of
+     * the marker for the given battery level.
+     */
+    float batteryBarOffset(float batteryPercent) {
+        return (1 - batteryPercent) * batteryBarHeight();
+    }
+
+    /**
+     * Returns the length of the battery bar at a full battery.
+     */
+    float batteryBarHeight() {
+        return outerTickRadius - innerLargeTickRadius;
+    }
+}
@@ -0,0 +1,160 @@
+package com.cybermats.cleaner;
+
+/**
+ * Draws the interactive face on a {@link RenderTarget}: the dial with the date box, the battery
+ * bar, the date and the hands. The engine picks the paints and decides what is cached; this
+ * class only knows what the face looks like, so that it can be drawn the same way on a device and
+ * off it.
+ */
+class FacePainter {
+    private final FacePath mSecondHandPath = new FacePath();
+    private FaceGeometry mGeometry;
+    private PaintSet mPaints;
+
+    /**
+     * Sets the geometry to draw with. It must not change until the next call.
+     */
+    void setGeometry(FaceGeometry geometry) {
+        mGeometry = geometry;
+        final float centerX = geometry.centerX;
+        final float centerY = geometry.centerY;
+        mSecondHandPath.reset();
+        mSecondHandPath.moveTo(centerX, centerY - geometry.secondHandFrontLength);
+        mSecondHandPath.lineTo(centerX - (geometry.secondHandWidth / 2),
+                centerY + geometry.secondHandBackLength);
+        mSecondHandPath.lineTo(centerX + (geometry.secondHandWidth / 2),
+                centerY + geometry.secondHandBackLength);
+    }
+
+    /**
+     * Sets the interactive paints to draw with, e.g. the dimmed ones in mute mode.
+     */
+    void setPaints(PaintSet paints) {
+        mPaints = paints;
+    }
+
+    PaintSet getPaints() {
+        return mPaints;
+    }
+
+    void drawDial(RenderTarget target) {
+        final FaceGeometry g = mGeometry;
+        final PaintSet p = mPaints;
+        target.drawColor(p.backgroundColor);
+        /*
+         * Draw ticks. Usually you will want to bake this directly into the photo, but in
+         * cases where you want to allow users to select their own photos, this dynamically
+         * creates them on top of the photo. The tick geometry is computed with the surface size.
+         */
+        target.drawLines(g.tickMarks.smallTicks, p.smallTick);
+
+        final float width = g.twelveMarkerWidth;
+        target.drawRect(g.centerX - (width / 2f),
+                g.centerY - g.outerTickRadius,
+                g.centerX + (width / 2f),
+                g.centerY - g.innerLargeTickRadius,
+                p.main);
+
+        target.drawRect(
+                g.centerX - (width * 3 / 5f) / 2f,
+                g.centerY - g.outerTickRadius,
+                g.centerX + (width * 3 / 5f) / 2f,
+                g.centerY - g.innerLargeTickRadius,
+                p.secondary);
+
+        target.drawPath(g.tickMarks.hourTickPath, p.main);
+        target.drawPath(g.tickMarks.hourTickHighlightPath, p.secondary);
+
+        target.drawRect(g.dateTextLeft, g.dateTextTop, g.dateTextRight, g.dateTextBottom,
+                p.dateBox);
+    }
+
+    /**
+     * Draws the battery level inside the twelve o'clock marker.
+     */
+    void drawBattery(RenderTarget target, float batteryPercent) {
+        final FaceGeometry g = mGeometry;
+        target.drawRect(g.centerX - (g.largeTickWidth / 6f),
+                g.centerY - g.outerTickRadius + g.batteryBarOffset(batteryPercent),
+                g.centerX + (g.largeTickWidth / 6f),
+                g.centerY - g.innerLargeTickRadius,
+                mPaints.battery);
+    }
+
+    /**
+     * Draws the date. The box around it is part of the dial.
+     */
+    void drawDate(RenderTarget target, String date) {
+        drawDate(target, mGeometry, date, mPaints.dateText);
+    }
+
+    /**
+     * Draws the date centered in the date box, with {@code paint}.
+     */
+    static void drawDate(RenderTarget target, FaceGeometry geometry, String date,
+                         RenderPaint paint) {
+        target.drawText(date, (geometry.dateTextLeft + geometry.dateTextRight) / 2f,
+                geometry.centerY + target.getTextHeight(date, paint) / 2f, paint);
+    }
+
+    /**
+     * Draws the center circle and the hands at the given rotations, in degrees.
+     */
+    void drawHands(RenderTarget target, float hoursRotation, float minutesRotation,
+                   float secondsRotation) {
+        final float centerX = mGeometry.centerX;
+        final float centerY = mGeometry.centerY;
+        target.save();
+        drawCenter(target);
+        target.rotate(hoursRotation, centerX, centerY);
+        drawHourHand(target);
+        target.rotate(minutesRotation - hoursRotation, centerX, centerY);
+        drawMinuteHand(target);
+        target.rotate(secondsRotation - minutesRotation, centerX, centerY);
+        drawSecondHand(target);
+        target.restore();
+    }
+
+    /*
+     * The hands below are drawn pointing at twelve o'clock, rotate the target to position them.
+     */
+
+    void drawCenter(RenderTarget target) {
+        target.drawCircle(mGeometry.centerX, mGeometry.centerY, mGeometry.hourHandCircle,
+                mPaints.main);
+    }
+
+    void drawHourHand(RenderTarget target) {
+        final FaceGeometry g = mGeometry;
+        target.drawRect(g.centerX - (g.hourHandWidth / 2f),
+                g.centerY - g.hourHandFrontLength,
+                g.centerX + (g.hourHandWidth / 2f),
+                g.centerY + g.hourHandBackLength,
+                mPaints.main);
+
+        target.drawRect(g.centerX - (g.hourHandWidth / 6f),
+                g.centerY - g.hourHandHighlightLength,
+                g.centerX + (g.hourHandWidth / 6f),
+                g.centerY + g.hourHandBackLength,
+                mPaints.secondary);
+    }
+
+    void drawMinuteHand(RenderTarget target) {
+        final FaceGeometry g = mGeometry;
+        target.drawRect(g.centerX - (g.minuteHandWidth / 2f),
+                g.centerY - g.minuteHandFrontLength,
+                g.centerX + (g.minuteHandWidth / 2f),
+                g.centerY + g.minuteHandBackLength,
+                mPaints.main);
+
+        target.drawRect(g.centerX - (g.minuteHandWidth / 6f),
+                g.centerY - g.minuteHandHighlightLength,
+                g.centerX + (g.minuteHandWidth / 6f),
+                g.centerY + g.minuteHandBackLength,
+                mPaints.secondary);
+    }
+
+    void drawSecondHand(RenderTarget target) {
+        target.drawPath(mSecondHandPath, mPaints.second);
+    }
+}
@@ -0,0 +1,88 @@
+package com.cybermats.cleaner;
+
+/**
+ * An outline made of closed polygons, for drawing on a {@link RenderTarget}. The points are kept
+ * in arrays that only grow, so rebuilding a path of the same size doesn't allocate.
+ * <p>
+ * Like {@link RenderPaint}, backends keep their own translation of the path until
+ * {@link #generation} changes.
+ */
+final class FacePath {
+    private float[] mPoints = new float[16];
+    private int mPointCount;
+    /* Index of the first point of each polygon. */
+    private int[] mStarts = new int[4];
+    private int mPolygonCount;
+
+    int generation;
+
+    void reset() {
+        mPointCount = 0;
+        mPolygonCount = 0;
+        generation++;
+    }
+
+    /**
+     * Starts a new polygon at {@code x, y}.
+     */
+    void moveTo(float x, float y) {
+        if (mPolygonCount == mStarts.length) {
+            final int[] starts = new int[mStarts.length * 2];
+            System.arraycopy(mStarts, 0, starts, 0, mPolygonCount);
+            mStarts = starts;
+        }
+        mStarts[mPolygonCount++] = mPointCount;
+        lineTo(x, y);
+    }
+
+    void lineTo(float x, float y) {
+        if (2 * mPointCount + 2 > mPoints.length) {
+            final float[] points = new float[mPoints.length * 2];
+            System.arraycopy(mPoints, 0, points, 0, 2 * mPointCount);
+            mPoints = points;
+        }
+        mPoints[2 * mPointCount] = x;
+        mPoints[2 * mPointCount + 1] = y;
+        mPointCount++;
+        generation++;
+    }
+
+    /**
+     * Adds one polygon for every four corners in {@code quads}, eight floats each.
+     */
+    void addQuads(float[] quads) {
+        for (int i = 0; i < quads.length; i += 8) {
+            moveTo(quads[i], quads[i + 1]);
+            lineTo(quads[i + 2], quads[i + 3]);
+            lineTo(quads[i + 4], quads[i + 5]);
+            lineTo(quads[i + 6], quads[i + 7]);
+        }
+    }
+
+    int getPolygonCount() {
+        return mPolygonCount;
+    }
+
+    /**
+     * Returns the index of the first point of {@code polygon}.
+     */
+    int getPolygonStart(int polygon) {
+        return mStarts[polygon];
+    }
+
+    /**
+     * Returns the number of points in {@code polygon}.
+     */
+    int getPolygonSize(int polygon) {
+        final int end = polygon + 1 < mPolygonCount ? mStarts[polygon + 1] : mPointCount;
+        return end - mStarts[polygon];
+    }
+
+    float getX(int point) {
+        return mPoints[2 * point];
+    }
+
+    float getY(int point) {
+        return mPoints[2 * point + 1];
+    }
+}
@@ -0,0 +1,72 @@
+package com.cybermats.cleaner;
+
+import java.util.Arrays;
+
+/**
+ * The colours of the interactive face, as ARGB. A theme is immutable; the paints for every
+ * display mode are built from it once, by {@link PaintSets}. The ambient face is always white or
+ * grey on black, whatever the theme.
+ */
+final class FaceTheme {
+    /* The order of the colours in a theme's resource array. */
+    private static final int BACKGROUND = 0;
+    private static final int TICK = 1;
+    private static final int MAIN = 2;
+    private static final int SECONDARY = 3;
+    private static final int SECOND = 4;
+    private static final int SHADOW = 5;
+    private static final int DATE_TEXT = 6;
+    private static final int DATE_BOX = 7;
+    private static final int BATTERY = 8;
+    static final int COLOR_COUNT = 9;
+
+    /* The face's original colours, used when no other theme has been picked. */
+    static final FaceTheme DEFAULT = new FaceTheme(new int[]{
+            0xff000000, 0xffcccccc, 0xffffffff, 0xff444444, 0xffff0000,
+            0xff000000, 0xffffffff, 0xffcccccc, 0xffffffff});
+
+    final int backgroundColor;
+    final int tickColor;
+    final int mainColor;
+    final int secondaryColor;
+    final int secondColor;
+    final int shadowColor;
+    final int dateTextColor;
+    final int dateBoxColor;
+    final int batteryColor;
+
+    /**
+     * @param colors the colours in the order of the theme resource arrays: background, ticks,
+     *               main, secondary, second hand, shadow, date text, date box and battery.
+     */
+    FaceTheme(int[] colors) {
+        if (colors.length != COLOR_COUNT) {
+            throw new IllegalArgumentException(
+                    "A theme has " + COLOR_COUNT + " colours, not " + colors.length);
+        }
+        backgroundColor = colors[BACKGROUND];
+        tickColor = colors[TICK];
+        mainColor = colors[MAIN];
+        secondaryColor = colors[SECONDARY];
+        secondColor = colors[SECOND];
+        shadowColor = colors[SHADOW];
+        dateTextColor = colors[DATE_TEXT];
+        dateBoxColor = colors[DATE_BOX];
+        batteryColor = colors[BATTERY];
+    }
+
+    private int[] toArray() {
+        return new int[]{backgroundColor, tickColor, mainColor, secondaryColor, secondColor,
+                shadowColor, dateTextColor, dateBoxColor, batteryColor};
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof FaceTheme && Arrays.equals(toArray(), ((FaceTheme) o).toArray());
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(toArray());
+    }
+}
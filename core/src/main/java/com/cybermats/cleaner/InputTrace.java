@@ -0,0 +1,180 @@
+package com.cybermats.cleaner;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * A record of the inputs that drove an engine: mode and visibility changes, battery and time zone
+ * broadcasts, time ticks and the frames the engine drew, each with the wall clock time it arrived
+ * at. Records are kept in a fixed size ring of {@link #RECORD_BYTES} each, so recording can be
+ * left on and only the most recent events are kept.
+ * <p>
+ * The state inputs that fell out of the ring are not lost: the value each one had just before the
+ * oldest record is kept as the base state, so that a replay can start from the same state the
+ * recording did.
+ * <p>
+ * Methods are synchronized, so that the main and the render thread can both record.
+ */
+final class InputTrace {
+    /* Event types. The value is 1 or 0 for the boolean ones. */
+    static final byte AMBIENT = 0;
+    static final byte VISIBILITY = 1;
+    /* The value is the battery level as Float.floatToIntBits. */
+    static final byte BATTERY = 2;
+    /* The value is the zone's UTC offset, in milliseconds, at the time of the event. */
+    static final byte TIME_ZONE = 3;
+    static final byte MUTE = 4;
+    /* Events without a state. The value of a frame is 1 for a partial redraw. */
+    static final byte TIME_TICK = 5;
+    static final byte FRAME = 6;
+    private static final int STATE_TYPES = 5;
+
+    /* Type, time and value. */
+    static final int RECORD_BYTES = 1 + 8 + 4;
+    private static final int MAGIC = 0x53575452;
+    private static final int VERSION = 1;
+
+    private final ByteBuffer mRecords;
+    private final int mCapacity;
+    /* Index of the next record to write, and the number of records kept. */
+    private int mNext;
+    private int mSize;
+    /* The state before the oldest record, for the types whose bit is set in mBaseKnown. */
+    private final int[] mBaseValues = new int[STATE_TYPES];
+    private int mBaseKnown;
+
+    /**
+     * @param capacity the number of records kept.
+     */
+    InputTrace(int capacity) {
+        mCapacity = capacity;
+        mRecords = ByteBuffer.allocate(capacity * RECORD_BYTES);
+    }
+
+    synchronized void record(byte type, long timeMs, int value) {
+        final int offset = mNext * RECORD_BYTES;
+        if (mSize == mCapacity) {
+            /* The oldest record is overwritten, it becomes part of the base state. */
+            final byte evictedType = mRecords.get(offset);
+            if (evictedType < STATE_TYPES) {
+                mBaseValues[evictedType] = mRecords.getInt(offset + 9);
+                mBaseKnown |= 1 << evictedType;
+            }
+        } else {
+            mSize++;
+        }
+        mRecords.put(offset, type);
+        mRecords.putLong(offset + 1, timeMs);
+        mRecords.putInt(offset + 9, value);
+        mNext = (mNext + 1) % mCapacity;
+    }
+
+    synchronized int size() {
+        return mSize;
+    }
+
+    /* Records are indexed from the oldest one. */
+
+    synchronized byte getType(int index) {
+        return mRecords.get(offset(index));
+    }
+
+    synchronized long getTimeMs(int index) {
+        return mRecords.getLong(offset(index) + 1);
+    }
+
+    synchronized int getValue(int index) {
+        return mRecords.getInt(offset(index) + 9);
+    }
+
+    /**
+     * Returns whether the state of {@code type} before the oldest record is known.
+     */
+    synchronized boolean hasBaseValue(byte type) {
+        return type < STATE_TYPES && (mBaseKnown & (1 << type)) != 0;
+    }
+
+    synchronized int getBaseValue(byte type) {
+        return mBaseValues[type];
+    }
+
+    private int offset(int index) {
+        if (index < 0 || index >= mSize) {
+            throw new IndexOutOfBoundsException("Record " + index + " of " + mSize);
+        }
+        return (mNext - mSize + index + mCapacity) % mCapacity * RECORD_BYTES;
+    }
+
+    /**
+     * Writes the base state and the records, oldest first, to {@code file}. The file is replaced
+     * in one go, so a reader never sees half a trace.
+     */
+    synchronized void writeTo(File file) throws IOException {
+        final File temporary = new File(file.getPath() + ".tmp");
+        final DataOutputStream data = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(temporary)));
+        try {
+            write(data);
+        } finally {
+            data.close();
+        }
+        if (!temporary.renameTo(file)) {
+            throw new IOException("Can't replace " + file);
+        }
+    }
+
+    private void write(DataOutputStream data) throws IOException {
+        data.writeInt(MAGIC);
+        data.writeInt(VERSION);
+        data.writeInt(mSize);
+        data.writeInt(mBaseKnown);
+        for (int value : mBaseValues) {
+            data.writeInt(value);
+        }
+        for (int i = 0; i < mSize; i++) {
+            final int offset = offset(i);
+            data.write(mRecords.array(), offset, RECORD_BYTES);
+        }
+    }
+
+    /**
+     * Reads a trace written with {@link #writeTo}.
+     *
+     * @throws IOException if {@code file} doesn't hold a trace.
+     */
+    static InputTrace readFrom(File file) throws IOException {
+        final DataInputStream data = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(file)));
+        try {
+            return read(data);
+        } finally {
+            data.close();
+        }
+    }
+
+    private static InputTrace read(DataInputStream data) throws IOException {
+        if (data.readInt() != MAGIC || data.readInt() != VERSION) {
+            throw new IOException("Not an input trace");
+        }
+        final int size = data.readInt();
+        if (size < 0) {
+            throw new IOException("Bad input trace size " + size);
+        }
+        final InputTrace trace = new InputTrace(Math.max(size, 1));
+        trace.mBaseKnown = data.readInt();
+        for (int i = 0; i < STATE_TYPES; i++) {
+            trace.mBaseValues[i] = data.readInt();
+        }
+        data.readFully(trace.mRecords.array(), 0, size * RECORD_BYTES);
+        trace.mSize = size;
+        trace.mNext = size % trace.mCapacity;
+        return trace;
+    }
+}
@@ -0,0 +1,35 @@
+package com.cybermats.cleaner;
+
+/**
+ * The paints the face is drawn with in one display mode, by the role they play on the face.
+ * Sets are built once by {@link PaintSets} and never modified, so switching modes only swaps the
+ * set, and anything rendered with a paint stays valid for as long as the paint is the same object.
+ * Sets for different modes share the paints that look the same in both.
+ */
+final class PaintSet {
+    final int backgroundColor;
+    /* The twelve o'clock marker, hour ticks, center circle and the hands. */
+    final RenderPaint main;
+    /* The highlights on the marker, the hour ticks and the hands. */
+    final RenderPaint secondary;
+    final RenderPaint second;
+    final RenderPaint smallTick;
+    /* The date and the complication text. */
+    final RenderPaint dateText;
+    /* The boxes around the date and the complications. */
+    final RenderPaint dateBox;
+    final RenderPaint battery;
+
+    PaintSet(int backgroundColor, RenderPaint main, RenderPaint secondary, RenderPaint second,
+             RenderPaint smallTick, RenderPaint dateText, RenderPaint dateBox,
+             RenderPaint battery) {
+        this.backgroundColor = backgroundColor;
+        this.main = main;
+        this.secondary = secondary;
+        this.second = second;
+        this.smallTick = smallTick;
+        this.dateText = dateText;
+        this.dateBox = dateBox;
+        this.battery = battery;
+    }
+}
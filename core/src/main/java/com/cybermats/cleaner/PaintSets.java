@@ -0,0 +1,123 @@
+package com.cybermats.cleaner;
+
+/**
+ * The {@link PaintSet} for every display mode, built once from a {@link FaceTheme}: interactive
+ * and ambient, with and without mute mode, and in ambient mode for each combination of the
+ * low-bit and burn-in protection display properties. The sets are immutable, so one that is in
+ * use by the render thread can be replaced by publishing a new {@code PaintSets}.
+ * <p>
+ * The ambient sets are only built when one is first asked for, so that they stay off the path to
+ * the first, interactive frame. {@link #get} may be called from any thread.
+ */
+final class PaintSets {
+    private static final int BLACK = 0xff000000;
+    private static final int GRAY = 0xff888888;
+    private static final int WHITE = 0xffffffff;
+
+    /* Alpha of the hands and ticks in mute mode. */
+    private static final int MUTE_ALPHA = 100;
+    private static final int MUTE_SECOND_ALPHA = 80;
+
+    final FaceTheme theme;
+    private final PaintSet mInteractive;
+    private final PaintSet mInteractiveMute;
+    private final float mTextSize;
+    /* Indexed by ambientIndex(), null until an ambient set is first asked for. */
+    private PaintSet[] mAmbient;
+
+    PaintSets(FaceTheme theme, float textSize, float shadowRadius) {
+        this.theme = theme;
+        mTextSize = textSize;
+
+        final RenderPaint main = paint(theme.mainColor, RenderPaint.Style.FILL_AND_STROKE, true);
+        main.setShadowLayer(shadowRadius, theme.shadowColor);
+        final RenderPaint secondary =
+                paint(theme.secondaryColor, RenderPaint.Style.FILL_AND_STROKE, true);
+        final RenderPaint second =
+                paint(theme.secondColor, RenderPaint.Style.FILL_AND_STROKE, true);
+        second.setStrokeWidth(1f);
+        second.setShadowLayer(shadowRadius, theme.shadowColor);
+        final RenderPaint smallTick =
+                paint(theme.tickColor, RenderPaint.Style.FILL_AND_STROKE, true);
+        final RenderPaint dateText = paint(theme.dateTextColor, RenderPaint.Style.FILL, true);
+        dateText.setTextSize(textSize);
+        final RenderPaint dateBox = paint(theme.dateBoxColor, RenderPaint.Style.STROKE, true);
+        final RenderPaint battery = paint(theme.batteryColor, RenderPaint.Style.FILL, true);
+        mInteractive = new PaintSet(theme.backgroundColor, main, secondary, second, smallTick,
+                dateText, dateBox, battery);
+
+        /* Mute mode only dims the hands and ticks, the rest is shared. */
+        final RenderPaint mainMute =
+                paint(theme.mainColor, RenderPaint.Style.FILL_AND_STROKE, true);
+        mainMute.setAlpha(MUTE_ALPHA);
+        mainMute.setShadowLayer(shadowRadius, theme.shadowColor);
+        final RenderPaint secondaryMute =
+                paint(theme.secondaryColor, RenderPaint.Style.FILL_AND_STROKE, true);
+        secondaryMute.setAlpha(MUTE_ALPHA);
+        final RenderPaint secondMute =
+                paint(theme.secondColor, RenderPaint.Style.FILL_AND_STROKE, true);
+        secondMute.setAlpha(MUTE_SECOND_ALPHA);
+        secondMute.setStrokeWidth(1f);
+        secondMute.setShadowLayer(shadowRadius, theme.shadowColor);
+        mInteractiveMute = new PaintSet(theme.backgroundColor, mainMute, secondaryMute,
+                secondMute, smallTick, dateText, dateBox, battery);
+    }
+
+    /**
+     * Returns the paints for a display mode. The low-bit and burn-in protection properties only
+     * matter in ambient mode.
+     */
+    PaintSet get(boolean ambient, boolean lowBitAmbient, boolean burnInProtection,
+                 boolean muteMode) {
+        if (!ambient) {
+            return muteMode ? mInteractiveMute : mInteractive;
+        }
+        return ambient()[ambientIndex(lowBitAmbient, burnInProtection, muteMode)];
+    }
+
+    private synchronized PaintSet[] ambient() {
+        if (mAmbient != null) {
+            return mAmbient;
+        }
+        final PaintSet[] sets = new PaintSet[8];
+        for (int lowBit = 0; lowBit < 2; lowBit++) {
+            for (int mute = 0; mute < 2; mute++) {
+                /* Dim in mute mode, like the interactive face, unless there are no greys. */
+                if (lowBit == 1 && mute == 1) {
+                    for (int burnIn = 0; burnIn < 2; burnIn++) {
+                        sets[ambientIndex(true, burnIn == 1, true)] =
+                                sets[ambientIndex(true, burnIn == 1, false)];
+                    }
+                    continue;
+                }
+                final int color = mute == 1 ? GRAY : WHITE;
+                final boolean antiAlias = lowBit == 0;
+                final RenderPaint outline = paint(color, RenderPaint.Style.STROKE, antiAlias);
+                final RenderPaint fill = paint(color, RenderPaint.Style.FILL, antiAlias);
+                final RenderPaint text = paint(color, RenderPaint.Style.FILL, antiAlias);
+                text.setTextSize(mTextSize);
+                for (int burnIn = 0; burnIn < 2; burnIn++) {
+                    /* Everything is an outline, and with burn-in protection the battery too. */
+                    sets[ambientIndex(lowBit == 1, burnIn == 1, mute == 1)] = new PaintSet(
+                            BLACK, outline, outline, outline, outline, text, outline,
+                            burnIn == 1 ? outline : fill);
+                }
+            }
+        }
+        mAmbient = sets;
+        return sets;
+    }
+
+    private static int ambientIndex(boolean lowBitAmbient, boolean burnInProtection,
+                                    boolean muteMode) {
+        return (lowBitAmbient ? 4 : 0) | (burnInProtection ? 2 : 0) | (muteMode ? 1 : 0);
+    }
+
+    private static RenderPaint paint(int color, RenderPaint.Style style, boolean antiAlias) {
+        final RenderPaint paint = new RenderPaint();
+        paint.setColor(color);
+        paint.setStyle(style);
+        paint.setAntiAlias(antiAlias);
+        return paint;
+    }
+}
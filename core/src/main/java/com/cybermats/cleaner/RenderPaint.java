@@ -0,0 +1,104 @@
+package com.cybermats.cleaner;
+
+/**
+ * How a shape or text is drawn on a {@link RenderTarget}: colour, style, anti-aliasing, stroke
+ * width, text size and an optional shadow. Text is always drawn centered on its x coordinate.
+ * <p>
+ * Backends translate a paint into their own paint object once and keep it, and translate it
+ * again only after a setter bumped {@link #generation}, so drawing with an unchanged paint never
+ * allocates. Paints are shared between engines, so each backend target keeps its own
+ * translations rather than storing them here.
+ */
+final class RenderPaint {
+    enum Style {
+        FILL, STROKE, FILL_AND_STROKE
+    }
+
+    private int mColor = 0xff000000;
+    private Style mStyle = Style.FILL;
+    private boolean mAntiAlias;
+    private float mStrokeWidth;
+    private float mTextSize = 12f;
+    private float mShadowRadius;
+    private int mShadowColor;
+
+    /* Bumped by every setter, so that backends know when to translate the paint again. */
+    int generation;
+
+    /**
+     * @param color the colour as ARGB.
+     */
+    void setColor(int color) {
+        mColor = color;
+        generation++;
+    }
+
+    int getColor() {
+        return mColor;
+    }
+
+    /**
+     * Sets the alpha of the colour, {@code 0..255}, keeping its RGB.
+     */
+    void setAlpha(int alpha) {
+        setColor((alpha << 24) | (mColor & 0x00ffffff));
+    }
+
+    void setStyle(Style style) {
+        mStyle = style;
+        generation++;
+    }
+
+    Style getStyle() {
+        return mStyle;
+    }
+
+    void setAntiAlias(boolean antiAlias) {
+        mAntiAlias = antiAlias;
+        generation++;
+    }
+
+    boolean isAntiAlias() {
+        return mAntiAlias;
+    }
+
+    /**
+     * @param strokeWidth width of strokes in pixels, 0 for hairlines.
+     */
+    void setStrokeWidth(float strokeWidth) {
+        mStrokeWidth = strokeWidth;
+        generation++;
+    }
+
+    float getStrokeWidth() {
+        return mStrokeWidth;
+    }
+
+    void setTextSize(float textSize) {
+        mTextSize = textSize;
+        generation++;
+    }
+
+    float getTextSize() {
+        return mTextSize;
+    }
+
+    /**
+     * Draws shapes with a blurred shadow below them. Backends without blurs may ignore it.
+     *
+     * @param radius blur radius in pixels, 0 for no shadow.
+     */
+    void setShadowLayer(float radius, int color) {
+        mShadowRadius = radius;
+        mShadowColor = color;
+        generation++;
+    }
+
+    float getShadowRadius() {
+        return mShadowRadius;
+    }
+
+    int getShadowColor() {
+        return mShadowColor;
+    }
+}
@@ -0,0 +1,47 @@
+package com.cybermats.cleaner;
+
+/**
+ * The drawing operations the face is made of. The app implements it on top of an
+ * {@code android.graphics.Canvas}, and the desktop module with Java2D, so that the same drawing
+ * code can be rendered, timed and compared to reference images without a device.
+ * <p>
+ * Coordinates are in pixels and rotations in degrees clockwise, as on a Canvas.
+ */
+interface RenderTarget {
+    /**
+     * Saves the current transform, to be put back by {@link #restore}.
+     */
+    void save();
+
+    void restore();
+
+    void translate(float dx, float dy);
+
+    void rotate(float degrees, float pivotX, float pivotY);
+
+    /**
+     * Fills the whole target with {@code color}, as ARGB.
+     */
+    void drawColor(int color);
+
+    void drawRect(float left, float top, float right, float bottom, RenderPaint paint);
+
+    /**
+     * Draws a line for every four floats in {@code points}: start x and y, end x and y.
+     */
+    void drawLines(float[] points, RenderPaint paint);
+
+    void drawCircle(float centerX, float centerY, float radius, RenderPaint paint);
+
+    void drawPath(FacePath path, RenderPaint paint);
+
+    /**
+     * Draws {@code text} centered on {@code x}, with its baseline at {@code y}.
+     */
+    void drawText(String text, float x, float y, RenderPaint paint);
+
+    /**
+     * Returns the height of the bounds of {@code text} drawn with {@code paint}.
+     */
+    float getTextHeight(String text, RenderPaint paint);
+}
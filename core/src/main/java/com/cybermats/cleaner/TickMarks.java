@@ -0,0 +1,90 @@
+package com.cybermats.cleaner;
+
+/**
+ * Geometry for the tick marks around the dial, computed once per surface size so that the dial
+ * can be drawn with a handful of batched calls instead of one call per tick.
+ * <p>
+ * The minute ticks are kept as a line array for {@link RenderTarget#drawLines}, and the hour
+ * ticks as quads which are also joined into a single {@link FacePath}.
+ */
+class TickMarks {
+    static final int POSITIONS = 60;
+    private static final int POSITIONS_PER_HOUR = POSITIONS / 12;
+
+    /* The date box sits at three o'clock, so it gets a small tick instead of an hour tick. */
+    private static final int DATE_POSITION = 15;
+
+    static final int SMALL_TICK_COUNT = POSITIONS - 12 + 1;
+    static final int HOUR_TICK_COUNT = 12 - 2;
+
+    /* Sine and cosine for each of the 60 positions, clockwise from twelve o'clock. */
+    private static final float[] SIN = new float[POSITIONS];
+    private static final float[] COS = new float[POSITIONS];
+
+    static {
+        for (int i = 0; i < POSITIONS; i++) {
+            double rotation = i * Math.PI * 2 / POSITIONS;
+            SIN[i] = (float) Math.sin(rotation);
+            COS[i] = (float) Math.cos(rotation);
+        }
+    }
+
+    /* Start and end points of each small tick, four floats per line. */
+    final float[] smallTicks = new float[SMALL_TICK_COUNT * 4];
+    /* Corners of each hour tick and its highlight strip, eight floats per quad. */
+    final float[] hourTicks = new float[HOUR_TICK_COUNT * 8];
+    final float[] hourTickHighlights = new float[HOUR_TICK_COUNT * 8];
+
+    final FacePath hourTickPath = new FacePath();
+    final FacePath hourTickHighlightPath = new FacePath();
+
+    void update(float centerX, float centerY, float outerRadius, float innerSmallRadius,
+                float innerLargeRadius, float largeTickWidth) {
+        int line = 0;
+        int quad = 0;
+        for (int i = 0; i < POSITIONS; i++) {
+            boolean hour = i % POSITIONS_PER_HOUR == 0;
+            if (!hour || i == DATE_POSITION) {
+                smallTicks[line++] = centerX + SIN[i] * innerSmallRadius;
+                smallTicks[line++] = centerY - COS[i] * innerSmallRadius;
+                smallTicks[line++] = centerX + SIN[i] * outerRadius;
+                smallTicks[line++] = centerY - COS[i] * outerRadius;
+            } else if (i != 0) {
+                /* Twelve o'clock has its own marker, drawn separately. */
+                setQuad(hourTicks, quad, i, centerX, centerY, outerRadius, innerLargeRadius,
+                        largeTickWidth / 2f);
+                setQuad(hourTickHighlights, quad, i, centerX, centerY, outerRadius,
+                        innerLargeRadius, largeTickWidth / 6f);
+                quad += 8;
+            }
+        }
+
+        hourTickPath.reset();
+        hourTickPath.addQuads(hourTicks);
+        hourTickHighlightPath.reset();
+        hourTickHighlightPath.addQuads(hourTickHighlights);
+    }
+
+    /**
+     * Stores the corners of a tick at {@code position} that runs radially between the two radii
+     * and extends {@code halfWidth} to either side.
+     */
+    private static void setQuad(float[] quads, int offset, int position, float centerX,
+                                float centerY, float outerRadius, float innerRadius,
+                                float halfWidth) {
+        final float dx = SIN[position];
+        final float dy = -COS[position];
+        /* Perpendicular to the tick, pointing clockwise. */
+        final float px = COS[position] * halfWidth;
+        final float py = SIN[position] * halfWidth;
+
+        quads[offset] = centerX + dx * outerRadius - px;
+        quads[offset + 1] = centerY + dy * outerRadius - py;
+        quads[offset + 2] = centerX + dx * outerRadius + px;
+        quads[offset + 3] = centerY + dy * outerRadius + py;
+        quads[offset + 4] = centerX + dx * innerRadius + px;
+        quads[offset + 5] = centerY + dy * innerRadius + py;
+        quads[offset + 6] = centerX + dx * innerRadius - px;
+        quads[offset + 7] = centerY + dy * innerRadius - py;
+    }
+}
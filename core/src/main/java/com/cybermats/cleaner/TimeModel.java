@@ -0,0 +1,144 @@
+package com.cybermats.cleaner;
+
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Splits epoch milliseconds into the local time fields needed to draw the watch face, without
+ * going through {@link java.util.Calendar}, which recomputes every field on each update.
+ * <p>
+ * The UTC offset is cached for the current minute. Daylight saving transitions fall on a minute
+ * boundary (some, like Newfoundland's old 00:01 changes, not on the hour), so the offset is only
+ * looked up again once a minute, or when the time zone is changed.
+ */
+class TimeModel {
+    private static final long MILLIS_PER_SECOND = TimeUnit.SECONDS.toMillis(1);
+    private static final long MILLIS_PER_MINUTE = TimeUnit.MINUTES.toMillis(1);
+    private static final long MILLIS_PER_HOUR = TimeUnit.HOURS.toMillis(1);
+    private static final long MILLIS_PER_DAY = TimeUnit.DAYS.toMillis(1);
+    private static final long OFFSET_PERIOD_MS = MILLIS_PER_MINUTE;
+
+    private TimeZone mTimeZone;
+    private int mOffsetMs;
+    private long mOffsetValidFrom = Long.MAX_VALUE;
+    private long mOffsetValidUntil = Long.MIN_VALUE;
+
+    private long mEpochDay = Long.MIN_VALUE;
+    private int mDayOfMonth;
+
+    private int mHour;
+    private int mMinute;
+    private int mSecond;
+    private int mMillisecond;
+
+    TimeModel(TimeZone timeZone) {
+        mTimeZone = timeZone;
+    }
+
+    /**
+     * Changes the time zone. Call {@link #setTime(long)} afterwards to update the fields.
+     */
+    void setTimeZone(TimeZone timeZone) {
+        mTimeZone = timeZone;
+        mOffsetValidFrom = Long.MAX_VALUE;
+        mOffsetValidUntil = Long.MIN_VALUE;
+    }
+
+    TimeZone getTimeZone() {
+        return mTimeZone;
+    }
+
+    void setTime(long timeMs) {
+        if (timeMs < mOffsetValidFrom || timeMs >= mOffsetValidUntil) {
+            mOffsetMs = mTimeZone.getOffset(timeMs);
+            mOffsetValidFrom = timeMs - floorMod(timeMs, OFFSET_PERIOD_MS);
+            mOffsetValidUntil = mOffsetValidFrom + OFFSET_PERIOD_MS;
+        }
+
+        final long localMs = timeMs + mOffsetMs;
+        final long epochDay = floorDiv(localMs, MILLIS_PER_DAY);
+        if (epochDay != mEpochDay) {
+            mEpochDay = epochDay;
+            mDayOfMonth = dayOfMonth(epochDay);
+        }
+
+        final int millisOfDay = (int) (localMs - epochDay * MILLIS_PER_DAY);
+        mHour = (int) (millisOfDay / MILLIS_PER_HOUR);
+        mMinute = (int) (millisOfDay % MILLIS_PER_HOUR / MILLIS_PER_MINUTE);
+        mSecond = (int) (millisOfDay % MILLIS_PER_MINUTE / MILLIS_PER_SECOND);
+        mMillisecond = (int) (millisOfDay % MILLIS_PER_SECOND);
+    }
+
+    /** Hour of day, 0-23. */
+    int getHourOfDay() {
+        return mHour;
+    }
+
+    int getMinute() {
+        return mMinute;
+    }
+
+    int getSecond() {
+        return mSecond;
+    }
+
+    int getMillisecond() {
+        return mMillisecond;
+    }
+
+    /** Day of month, 1-31. */
+    int getDayOfMonth() {
+        return mDayOfMonth;
+    }
+
+    int getOffsetMs() {
+        return mOffsetMs;
+    }
+
+    /*
+     * These calculations reflect the rotation in degrees per unit of time, e.g.,
+     * 360 / 60 = 6 and 360 / 12 = 30. All hands move continuously, unless the second hand is
+     * ticking, in which case it jumps to whole seconds.
+     */
+
+    float getSecondsRotation(boolean ticking) {
+        return ticking ? mSecond * 6f : (mSecond + mMillisecond / 1000f) * 6f;
+    }
+
+    float getMinutesRotation() {
+        return (mMinute + (mSecond + mMillisecond / 1000f) / 60f) * 6f;
+    }
+
+    float getHoursRotation() {
+        return ((mHour % 12) + (mMinute + mSecond / 60f) / 60f) * 30f;
+    }
+
+    /**
+     * Converts days since 1970-01-01 to the day of month in the proleptic Gregorian calendar.
+     * See Howard Hinnant's "civil_from_days".
+     */
+    private static int dayOfMonth(long epochDay) {
+        final long z = epochDay + 719468;
+        final long era = floorDiv(z, 146097);
+        final long dayOfEra = z - era * 146097;
+        final long yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524
+                - dayOfEra / 146096) / 365;
+        final long dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        final long monthIndex = (5 * dayOfYear + 2) / 153;
+        return (int) (dayOfYear - (153 * monthIndex + 2) / 5 + 1);
+    }
+
+    /* Math.floorDiv and Math.floorMod need API level 24. */
+
+    private static long floorDiv(long x, long y) {
+        long q = x / y;
+        if ((x % y != 0) && ((x ^ y) < 0)) {
+            q--;
+        }
+        return q;
+    }
+
+    private static long floorMod(long x, long y) {
+        return x - floorDiv(x, y) * y;
+    }
+}
@@ -0,0 +1,175 @@
+package com.cybermats.cleaner;
+
+import org.junit.Test;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Checks the ring of records in {@link InputTrace}, the base state that is kept of the records it
+ * overwrites, and that a trace reads back from its file as it was written.
+ */
+public class InputTraceTest {
+    private static final long START_MS = 1616886000000L;
+
+    @Test
+    public void keepsRecordsUntilFull() {
+        final InputTrace trace = new InputTrace(4);
+        trace.record(InputTrace.AMBIENT, START_MS, 1);
+        trace.record(InputTrace.FRAME, START_MS + 1, 0);
+        trace.record(InputTrace.BATTERY, START_MS + 2, Float.floatToIntBits(0.5f));
+
+        assertEquals(3, trace.size());
+        assertRecord(trace, 0, InputTrace.AMBIENT, START_MS, 1);
+        assertRecord(trace, 1, InputTrace.FRAME, START_MS + 1, 0);
+        assertRecord(trace, 2, InputTrace.BATTERY, START_MS + 2, Float.floatToIntBits(0.5f));
+        for (byte type = 0; type <= InputTrace.FRAME; type++) {
+            assertFalse(trace.hasBaseValue(type));
+        }
+    }
+
+    @Test
+    public void wrapsAroundKeepingTheNewestRecords() {
+        final InputTrace trace = new InputTrace(4);
+        /* Twice around the ring and a bit, with every type. */
+        final int count = 11;
+        for (int i = 0; i < count; i++) {
+            trace.record(type(i), START_MS + i, i);
+        }
+
+        assertEquals(4, trace.size());
+        for (int index = 0; index < 4; index++) {
+            final int i = count - 4 + index;
+            assertRecord(trace, index, type(i), START_MS + i, i);
+        }
+    }
+
+    @Test
+    public void keepsTheLastOverwrittenStateAsBase() {
+        final InputTrace trace = new InputTrace(3);
+        trace.record(InputTrace.AMBIENT, START_MS, 1);
+        trace.record(InputTrace.MUTE, START_MS + 1, 1);
+        trace.record(InputTrace.AMBIENT, START_MS + 2, 0);
+        trace.record(InputTrace.TIME_TICK, START_MS + 3, 0);
+        trace.record(InputTrace.FRAME, START_MS + 4, 1);
+        /* The ambient change at START_MS + 2 is overwritten too, and replaces the first. */
+        trace.record(InputTrace.FRAME, START_MS + 5, 0);
+        trace.record(InputTrace.FRAME, START_MS + 6, 0);
+
+        assertTrue(trace.hasBaseValue(InputTrace.AMBIENT));
+        assertEquals(0, trace.getBaseValue(InputTrace.AMBIENT));
+        assertTrue(trace.hasBaseValue(InputTrace.MUTE));
+        assertEquals(1, trace.getBaseValue(InputTrace.MUTE));
+        assertFalse(trace.hasBaseValue(InputTrace.BATTERY));
+        /* Ticks and frames have no state. */
+        assertFalse(trace.hasBaseValue(InputTrace.TIME_TICK));
+        assertFalse(trace.hasBaseValue(InputTrace.FRAME));
+        assertRecord(trace, 0, InputTrace.FRAME, START_MS + 4, 1);
+    }
+
+    @Test
+    public void rejectsIndicesOutsideTheRecords() {
+        final InputTrace trace = new InputTrace(2);
+        trace.record(InputTrace.FRAME, START_MS, 0);
+        trace.record(InputTrace.FRAME, START_MS + 1, 0);
+        trace.record(InputTrace.FRAME, START_MS + 2, 0);
+        for (int index : new int[]{-1, 2}) {
+            try {
+                trace.getType(index);
+                fail("Read record " + index);
+            } catch (IndexOutOfBoundsException expected) {
+                /* As it should. */
+            }
+        }
+    }
+
+    @Test
+    public void readsBackWhatWasWritten() throws IOException {
+        final InputTrace trace = new InputTrace(5);
+        trace.record(InputTrace.VISIBILITY, START_MS - 10, 1);
+        trace.record(InputTrace.TIME_ZONE, START_MS - 9, 3600000);
+        for (int i = 0; i < 13; i++) {
+            trace.record(type(i), START_MS + i * 33, -i);
+        }
+
+        final InputTrace read = writeAndRead(trace);
+        assertEquals(trace.size(), read.size());
+        for (int index = 0; index < trace.size(); index++) {
+            assertRecord(read, index, trace.getType(index), trace.getTimeMs(index),
+                    trace.getValue(index));
+        }
+        for (byte type = 0; type <= InputTrace.FRAME; type++) {
+            assertEquals(trace.hasBaseValue(type), read.hasBaseValue(type));
+            if (trace.hasBaseValue(type)) {
+                assertEquals(trace.getBaseValue(type), read.getBaseValue(type));
+            }
+        }
+
+        /* The trace read back is a full ring, which overwrites its oldest record next. */
+        read.record(InputTrace.MUTE, START_MS + 1000, 1);
+        assertEquals(trace.size(), read.size());
+        assertRecord(read, 0, trace.getType(1), trace.getTimeMs(1), trace.getValue(1));
+        assertRecord(read, read.size() - 1, InputTrace.MUTE, START_MS + 1000, 1);
+    }
+
+    @Test
+    public void readsBackAnEmptyTrace() throws IOException {
+        final InputTrace read = writeAndRead(new InputTrace(8));
+        assertEquals(0, read.size());
+        for (byte type = 0; type <= InputTrace.FRAME; type++) {
+            assertFalse(read.hasBaseValue(type));
+        }
+    }
+
+    @Test
+    public void rejectsOtherFiles() throws IOException {
+        final File file = File.createTempFile("not-a-trace", ".bin");
+        try {
+            final DataOutputStream data = new DataOutputStream(new FileOutputStream(file));
+            try {
+                data.writeInt(0x12345678);
+                data.writeInt(1);
+            } finally {
+                data.close();
+            }
+            try {
+                InputTrace.readFrom(file);
+                fail("Read " + file);
+            } catch (IOException expected) {
+                /* As it should. */
+            }
+        } finally {
+            file.delete();
+        }
+    }
+
+    /* Cycles through every event type. */
+    private static byte type(int i) {
+        return (byte) (i % (InputTrace.FRAME + 1));
+    }
+
+    private static InputTrace writeAndRead(InputTrace trace) throws IOException {
+        final File file = File.createTempFile("input-trace", ".bin");
+        try {
+            trace.writeTo(file);
+            return InputTrace.readFrom(file);
+        } finally {
+            file.delete();
+        }
+    }
+
+    private static void assertRecord(InputTrace trace, int index, byte type, long timeMs,
+                                     int value) {
+        final String message = "Record " + index;
+        assertEquals(message, type, trace.getType(index));
+        assertEquals(message, timeMs, trace.getTimeMs(index));
+        assertEquals(message, value, trace.getValue(index));
+    }
+}
@@ -0,0 +1,214 @@
+package com.cybermats.cleaner;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.GregorianCalendar;
+import java.util.List;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Compares {@link TimeModel} with {@link Calendar}, which the engine used before it, around the
+ * times where the cached offset and day could go stale: daylight saving transitions, including
+ * the half hour ones of Lord Howe, and the ones off the hour in St John's and Chatham, midnight,
+ * and times before the epoch.
+ */
+public class TimeModelTest {
+    private static final long SECOND_MS = TimeUnit.SECONDS.toMillis(1);
+    private static final long MINUTE_MS = TimeUnit.MINUTES.toMillis(1);
+    private static final long HOUR_MS = TimeUnit.HOURS.toMillis(1);
+    private static final long DAY_MS = TimeUnit.DAYS.toMillis(1);
+    /* A sweeping frame, which doesn't divide a second. */
+    private static final long FRAME_MS = 33;
+    /* 2021-01-01T00:00:00Z */
+    private static final long YEAR_2021_MS = 1609459200000L;
+
+    private static final String[] DST_ZONES = {
+            "Europe/Stockholm",
+            "America/New_York",
+            "Australia/Lord_Howe",
+            "America/St_Johns",
+            "Pacific/Chatham",
+    };
+
+    @Test
+    public void daylightSavingTransitions() {
+        for (String id : DST_ZONES) {
+            final TimeZone timeZone = TimeZone.getTimeZone(id);
+            final List<Long> transitions = transitions(timeZone, YEAR_2021_MS, 365 * DAY_MS);
+            assertEquals(id, 2, transitions.size());
+            for (long transitionMs : transitions) {
+                /* One model for the whole run, so that a stale cached offset would show. */
+                final TimeModel model = new TimeModel(timeZone);
+                final Calendar calendar = calendar(timeZone);
+                for (long timeMs = transitionMs - 2 * MINUTE_MS;
+                     timeMs < transitionMs + 2 * MINUTE_MS; timeMs += FRAME_MS) {
+                    assertMatches(id, model, calendar, timeMs);
+                }
+                for (long timeMs = transitionMs + 2 * MINUTE_MS;
+                     timeMs >= transitionMs - 2 * MINUTE_MS; timeMs -= SECOND_MS) {
+                    assertMatches(id, model, calendar, timeMs);
+                }
+                assertMatches(id, model, calendar, transitionMs - 1);
+                assertMatches(id, model, calendar, transitionMs);
+            }
+        }
+    }
+
+    @Test
+    public void offsetsAcrossTheYear() {
+        for (String id : DST_ZONES) {
+            final TimeZone timeZone = TimeZone.getTimeZone(id);
+            final TimeModel model = new TimeModel(timeZone);
+            final Calendar calendar = calendar(timeZone);
+            for (long timeMs = YEAR_2021_MS; timeMs < YEAR_2021_MS + 365 * DAY_MS;
+                 timeMs += 7 * MINUTE_MS + 13 * SECOND_MS + 17) {
+                assertMatches(id, model, calendar, timeMs);
+            }
+        }
+    }
+
+    @Test
+    public void dayRollover() {
+        for (String id : DST_ZONES) {
+            final TimeZone timeZone = TimeZone.getTimeZone(id);
+            final Calendar calendar = calendar(timeZone);
+            /* The end of a 31 day month, of February in a leap year and of the year. */
+            final int[][] dates = {{2021, Calendar.JANUARY, 31}, {2020, Calendar.FEBRUARY, 29},
+                    {2021, Calendar.FEBRUARY, 28}, {2021, Calendar.APRIL, 30},
+                    {2021, Calendar.DECEMBER, 31}};
+            for (int[] date : dates) {
+                calendar.clear();
+                calendar.set(date[0], date[1], date[2] + 1);
+                final long midnightMs = calendar.getTimeInMillis();
+                final TimeModel model = new TimeModel(timeZone);
+                for (long timeMs = midnightMs - MINUTE_MS; timeMs < midnightMs + MINUTE_MS;
+                     timeMs += FRAME_MS) {
+                    assertMatches(id, model, calendar, timeMs);
+                }
+                model.setTime(midnightMs - 1);
+                assertEquals(id, date[2], model.getDayOfMonth());
+                assertEquals(id, 23, model.getHourOfDay());
+                model.setTime(midnightMs);
+                assertEquals(id, 1, model.getDayOfMonth());
+                assertEquals(id, 0, model.getHourOfDay());
+            }
+        }
+    }
+
+    @Test
+    public void negativeEpochs() {
+        final String[] ids = {"UTC", "Europe/Stockholm", "America/New_York", "Pacific/Chatham"};
+        for (String id : ids) {
+            final TimeZone timeZone = TimeZone.getTimeZone(id);
+            final TimeModel model = new TimeModel(timeZone);
+            final Calendar calendar = calendar(timeZone);
+            for (long timeMs = MINUTE_MS; timeMs >= -MINUTE_MS; timeMs -= FRAME_MS) {
+                assertMatches(id, model, calendar, timeMs);
+            }
+            final long[] times = {-1, -SECOND_MS, -DAY_MS, -DAY_MS - 1, -DAY_MS + 1,
+                    -365 * DAY_MS - 1, -10000 * DAY_MS + 12345, -30000 * DAY_MS - 54321};
+            for (long timeMs : times) {
+                assertMatches(id, model, calendar, timeMs);
+            }
+        }
+    }
+
+    @Test
+    public void negativeEpochsBeforeTheGregorianReform() {
+        /* TimeModel counts days in the proleptic Gregorian calendar. */
+        final TimeZone utc = TimeZone.getTimeZone("UTC");
+        final GregorianCalendar calendar = calendar(utc);
+        calendar.setGregorianChange(new Date(Long.MIN_VALUE));
+        final TimeModel model = new TimeModel(utc);
+        for (long timeMs = -1000 * 365 * DAY_MS; timeMs > -800000 * DAY_MS;
+             timeMs -= 997 * DAY_MS + 12345) {
+            assertMatches("UTC", model, calendar, timeMs);
+        }
+    }
+
+    @Test
+    public void timeZoneChange() {
+        final TimeModel model = new TimeModel(TimeZone.getTimeZone("Europe/Stockholm"));
+        final long timeMs = YEAR_2021_MS + 100 * DAY_MS + 30 * SECOND_MS;
+        model.setTime(timeMs);
+        for (String id : DST_ZONES) {
+            final TimeZone timeZone = TimeZone.getTimeZone(id);
+            model.setTimeZone(timeZone);
+            assertMatches(id, model, calendar(timeZone), timeMs);
+        }
+    }
+
+    @Test
+    public void rotations() {
+        final TimeZone timeZone = TimeZone.getTimeZone("America/St_Johns");
+        final TimeModel model = new TimeModel(timeZone);
+        final Calendar calendar = calendar(timeZone);
+        for (long timeMs = YEAR_2021_MS; timeMs < YEAR_2021_MS + DAY_MS;
+             timeMs += MINUTE_MS + 7 * FRAME_MS) {
+            model.setTime(timeMs);
+            calendar.setTimeInMillis(timeMs);
+            final float seconds =
+                    calendar.get(Calendar.SECOND) + calendar.get(Calendar.MILLISECOND) / 1000f;
+            assertEquals(calendar.get(Calendar.SECOND) * 6f, model.getSecondsRotation(true), 0f);
+            assertEquals(seconds * 6f, model.getSecondsRotation(false), 1e-3f);
+            assertEquals((calendar.get(Calendar.MINUTE) + seconds / 60f) * 6f,
+                    model.getMinutesRotation(), 1e-3f);
+            final float hours = calendar.get(Calendar.HOUR) + calendar.get(Calendar.MINUTE) / 60f
+                    + calendar.get(Calendar.SECOND) / 3600f;
+            assertEquals(hours * 30f, model.getHoursRotation(), 1e-3f);
+        }
+    }
+
+    private static GregorianCalendar calendar(TimeZone timeZone) {
+        return new GregorianCalendar(timeZone);
+    }
+
+    private static void assertMatches(String id, TimeModel model, Calendar calendar,
+                                      long timeMs) {
+        model.setTime(timeMs);
+        calendar.setTimeInMillis(timeMs);
+        final String message = id + " at " + timeMs;
+        assertEquals(message,
+                calendar.get(Calendar.ZONE_OFFSET) + calendar.get(Calendar.DST_OFFSET),
+                model.getOffsetMs());
+        assertEquals(message, calendar.get(Calendar.DAY_OF_MONTH), model.getDayOfMonth());
+        assertEquals(message, calendar.get(Calendar.HOUR_OF_DAY), model.getHourOfDay());
+        assertEquals(message, calendar.get(Calendar.MINUTE), model.getMinute());
+        assertEquals(message, calendar.get(Calendar.SECOND), model.getSecond());
+        assertEquals(message, calendar.get(Calendar.MILLISECOND), model.getMillisecond());
+    }
+
+    /**
+     * Returns the instants in {@code [fromMs, fromMs + lengthMs)} where the offset of
+     * {@code timeZone} changes.
+     */
+    private static List<Long> transitions(TimeZone timeZone, long fromMs, long lengthMs) {
+        final List<Long> result = new ArrayList<>();
+        for (long timeMs = fromMs; timeMs < fromMs + lengthMs; timeMs += HOUR_MS) {
+            final int offset = timeZone.getOffset(timeMs);
+            if (timeZone.getOffset(timeMs + HOUR_MS) == offset) {
+                continue;
+            }
+            long before = timeMs;
+            long after = timeMs + HOUR_MS;
+            while (after - before > 1) {
+                final long middle = before + (after - before) / 2;
+                if (timeZone.getOffset(middle) == offset) {
+                    before = middle;
+                } else {
+                    after = middle;
+                }
+            }
+            assertTrue(timeZone.getID(), after % MINUTE_MS == 0);
+            result.add(after);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,150 @@
+package com.cybermats.cleaner;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.TimeZone;
+
+import javax.imageio.ImageIO;
+
+/**
+ * Renders whole frames of the face with the drawing code the app uses, on a plain JVM. Every
+ * frame is drawn from scratch, without the dial layer and hand sprites the app caches, so the
+ * time it takes is the cost of the drawing itself. {@link DesktopLayers} draws them with the
+ * caches.
+ * <p>
+ * Run with an output file, and optionally a size in pixels, a time in milliseconds since the
+ * epoch and "ambient", to write a frame as a PNG, e.g. as a reference image.
+ */
+class DesktopFace {
+    /* As the app's SHADOW_RADIUS. */
+    static final int SHADOW_RADIUS = 6;
+
+    private final FaceGeometry mGeometry = new FaceGeometry();
+    private final FacePainter mPainter = new FacePainter();
+    private final AmbientRenderer mAmbientRenderer = new AmbientRenderer();
+    private final TimeModel mTimeModel;
+    private final String[] mDayOfMonthStrings = new String[32];
+
+    DesktopFace(int size, TimeZone timeZone) {
+        mGeometry.update(size, size);
+        mTimeModel = new TimeModel(timeZone);
+        for (int day = 1; day < mDayOfMonthStrings.length; day++) {
+            mDayOfMonthStrings[day] = Integer.toString(day);
+        }
+
+        /* The text size the app gets from 15sp on a typical 320 pixel, hdpi watch. */
+        final float textSize = size * 22f / 320f;
+        final PaintSets paints = new PaintSets(FaceTheme.DEFAULT, textSize, SHADOW_RADIUS);
+        mPainter.setGeometry(mGeometry);
+        mPainter.setPaints(paints.get(false, false, false, false));
+        mAmbientRenderer.setPaints(paints.get(true, false, false, false), false);
+    }
+
+    FaceGeometry getGeometry() {
+        return mGeometry;
+    }
+
+    TimeModel getTimeModel() {
+        return mTimeModel;
+    }
+
+    FacePainter getPainter() {
+        return mPainter;
+    }
+
+    AmbientRenderer getAmbientRenderer() {
+        return mAmbientRenderer;
+    }
+
+    /**
+     * Creates an image the size of the face, to render frames into.
+     */
+    BufferedImage createImage() {
+        return new BufferedImage(mGeometry.width, mGeometry.height, BufferedImage.TYPE_INT_ARGB);
+    }
+
+    /**
+     * Draws the face at {@code timeMs} on {@code target}.
+     */
+    void render(RenderTarget target, long timeMs, boolean ambient, float batteryPercent) {
+        mTimeModel.setTime(timeMs);
+        final String date = mDayOfMonthStrings[mTimeModel.getDayOfMonth()];
+        if (ambient) {
+            final long minute = timeMs / 60000;
+            target.save();
+            target.translate(mAmbientRenderer.getShiftX(minute),
+                    mAmbientRenderer.getShiftY(minute));
+            mAmbientRenderer.drawDial(target, mGeometry);
+            mAmbientRenderer.drawBattery(target, mGeometry, batteryPercent);
+            mAmbientRenderer.drawDate(target, mGeometry, date);
+            mAmbientRenderer.drawHands(target, mGeometry, mTimeModel.getHoursRotation(),
+                    mTimeModel.getMinutesRotation());
+            target.restore();
+            return;
+        }
+        mPainter.drawDial(target);
+        drawAboveDial(target, date, batteryPercent);
+    }
+
+    /**
+     * Draws what the interactive face has above the dial at {@code timeMs}, the battery bar, the
+     * date and the hands, e.g. over a dial layer.
+     */
+    void renderAboveDial(RenderTarget target, long timeMs, float batteryPercent) {
+        renderBelowHands(target, timeMs, batteryPercent);
+        drawHands(target);
+    }
+
+    /**
+     * Draws what the interactive face has between the dial and the hands at {@code timeMs}, the
+     * battery bar and the date, e.g. below hand sprites. The time model is left at
+     * {@code timeMs}, to place the hands with.
+     */
+    void renderBelowHands(RenderTarget target, long timeMs, float batteryPercent) {
+        mTimeModel.setTime(timeMs);
+        mPainter.drawBattery(target, batteryPercent);
+        mPainter.drawDate(target, mDayOfMonthStrings[mTimeModel.getDayOfMonth()]);
+    }
+
+    private void drawAboveDial(RenderTarget target, String date, float batteryPercent) {
+        mPainter.drawBattery(target, batteryPercent);
+        mPainter.drawDate(target, date);
+        drawHands(target);
+    }
+
+    private void drawHands(RenderTarget target) {
+        mPainter.drawHands(target, mTimeModel.getHoursRotation(),
+                mTimeModel.getMinutesRotation(), mTimeModel.getSecondsRotation(false));
+    }
+
+    /**
+     * Counts the lit pixels of a rendered frame, as the app does for ambient frames.
+     */
+    static int countLitPixels(BufferedImage image) {
+        final int width = image.getWidth();
+        final int[] row = new int[width];
+        int lit = 0;
+        for (int y = 0; y < image.getHeight(); y++) {
+            image.getRGB(0, y, width, 1, row, 0, width);
+            lit += AmbientRenderer.countLitPixels(row, 0, width);
+        }
+        return lit;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Usage: DesktopFace <output.png> [size] [timeMs] [ambient]");
+            System.exit(2);
+        }
+        final int size = args.length > 1 ? Integer.parseInt(args[1]) : 320;
+        final long timeMs = args.length > 2 ? Long.parseLong(args[2]) : System.currentTimeMillis();
+        final boolean ambient = args.length > 3 && "ambient".equals(args[3]);
+
+        final DesktopFace face = new DesktopFace(size, TimeZone.getDefault());
+        final Java2dRenderTarget target = new Java2dRenderTarget(face.createImage());
+        face.render(target, timeMs, ambient, 1f);
+        target.dispose();
+        ImageIO.write(target.getImage(), "png", new File(args[0]));
+    }
+}
@@ -0,0 +1,46 @@
+package com.cybermats.cleaner;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * A hand pre-rendered into an image, pointing at twelve o'clock, with its shadow baked in, like
+ * the app's HandSprite. Drawn rotated around the face center instead of drawing the hand with its
+ * shadow.
+ */
+class DesktopHandSprite {
+    private BufferedImage mImage;
+    private float mPivotX;
+    private float mPivotY;
+
+    /**
+     * Prepares the sprite for a hand that extends {@code frontLength} above and
+     * {@code backLength} below the face center, and {@code halfWidth} to either side, with
+     * {@code padding} pixels around it for the shadow.
+     *
+     * @return a target with shadows, translated so that the hand can be drawn at its position on
+     * the face. Dispose it once the hand is drawn.
+     */
+    Java2dRenderTarget begin(float halfWidth, float frontLength, float backLength, float padding,
+                             float centerX, float centerY) {
+        final int width = (int) Math.ceil(2 * (halfWidth + padding));
+        final int height = (int) Math.ceil(frontLength + backLength + 2 * padding);
+        mImage = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        mPivotX = width / 2f;
+        mPivotY = padding + frontLength;
+
+        final Java2dRenderTarget target = new Java2dRenderTarget(mImage, true);
+        target.translate(mPivotX - centerX, mPivotY - centerY);
+        return target;
+    }
+
+    BufferedImage getImage() {
+        return mImage;
+    }
+
+    /**
+     * Draws the sprite rotated {@code rotation} degrees clockwise around the face center.
+     */
+    void draw(Java2dRenderTarget target, float centerX, float centerY, float rotation) {
+        target.drawImage(mImage, centerX, centerY, rotation, mPivotX, mPivotY);
+    }
+}
@@ -0,0 +1,87 @@
+package com.cybermats.cleaner;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * The layers the app caches to draw interactive frames faster, rendered with Java2D: the dial,
+ * and the hand sprites, with their shadows, drawn once and blitted on every frame. Used to time
+ * frames drawn from them against frames drawn from scratch by {@link DesktopFace}.
+ */
+class DesktopLayers {
+    /* As the app's SHADOW_EXTENT and HAND_BOUNDS_MARGIN around a sprite. */
+    private static final float SPRITE_PADDING = 2f * DesktopFace.SHADOW_RADIUS + 2f;
+
+    private final DesktopFace mFace;
+    private final BufferedImage mDial;
+    private final DesktopHandSprite mCenterSprite = new DesktopHandSprite();
+    private final DesktopHandSprite mHourHandSprite = new DesktopHandSprite();
+    private final DesktopHandSprite mMinuteHandSprite = new DesktopHandSprite();
+    private final DesktopHandSprite mSecondHandSprite = new DesktopHandSprite();
+
+    DesktopLayers(DesktopFace face) {
+        mFace = face;
+        mDial = face.createImage();
+        render();
+    }
+
+    /**
+     * Renders the layers again, as an engine does when the surface or the paints change.
+     */
+    void render() {
+        final FacePainter painter = mFace.getPainter();
+        final Java2dRenderTarget target = new Java2dRenderTarget(mDial, true);
+        painter.drawDial(target);
+        target.dispose();
+
+        final FaceGeometry g = mFace.getGeometry();
+        final float padding = SPRITE_PADDING;
+        Java2dRenderTarget sprite = mCenterSprite.begin(g.hourHandCircle, g.hourHandCircle,
+                g.hourHandCircle, padding, g.centerX, g.centerY);
+        painter.drawCenter(sprite);
+        sprite.dispose();
+        sprite = mHourHandSprite.begin(g.hourHandWidth / 2f, g.hourHandFrontLength,
+                g.hourHandBackLength, padding, g.centerX, g.centerY);
+        painter.drawHourHand(sprite);
+        sprite.dispose();
+        sprite = mMinuteHandSprite.begin(g.minuteHandWidth / 2f, g.minuteHandFrontLength,
+                g.minuteHandBackLength, padding, g.centerX, g.centerY);
+        painter.drawMinuteHand(sprite);
+        sprite.dispose();
+        sprite = mSecondHandSprite.begin(g.secondHandWidth / 2f, g.secondHandFrontLength,
+                g.secondHandBackLength, padding, g.centerX, g.centerY);
+        painter.drawSecondHand(sprite);
+        sprite.dispose();
+    }
+
+    /**
+     * Returns the images of the layers, the dial's and the sprites', as the app stores them.
+     */
+    BufferedImage[] getImages() {
+        return new BufferedImage[]{mDial, mCenterSprite.getImage(), mHourHandSprite.getImage(),
+                mMinuteHandSprite.getImage(), mSecondHandSprite.getImage()};
+    }
+
+    /**
+     * Draws an interactive frame at {@code timeMs}: the dial from the layer, and the rest over it.
+     */
+    void draw(Java2dRenderTarget target, long timeMs, float batteryPercent) {
+        target.drawImage(mDial, 0, 0);
+        mFace.renderAboveDial(target, timeMs, batteryPercent);
+    }
+
+    /**
+     * Draws an interactive frame at {@code timeMs} like {@link #draw}, but with the hands drawn
+     * from their sprites.
+     */
+    void drawWithSprites(Java2dRenderTarget target, long timeMs, float batteryPercent) {
+        target.drawImage(mDial, 0, 0);
+        mFace.renderBelowHands(target, timeMs, batteryPercent);
+
+        final FaceGeometry g = mFace.getGeometry();
+        final TimeModel time = mFace.getTimeModel();
+        mCenterSprite.draw(target, g.centerX, g.centerY, 0);
+        mHourHandSprite.draw(target, g.centerX, g.centerY, time.getHoursRotation());
+        mMinuteHandSprite.draw(target, g.centerX, g.centerY, time.getMinutesRotation());
+        mSecondHandSprite.draw(target, g.centerX, g.centerY, time.getSecondsRotation(false));
+    }
+}
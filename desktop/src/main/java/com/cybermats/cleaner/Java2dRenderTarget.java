@@ -0,0 +1,338 @@
+package com.cybermats.cleaner;
+
+import java.awt.AlphaComposite;
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.Shape;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Ellipse2D;
+import java.awt.geom.Line2D;
+import java.awt.geom.Path2D;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.ConvolveOp;
+import java.awt.image.Kernel;
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Draws on a {@link BufferedImage} with Java2D, so that the face can be rendered on an ordinary
+ * JVM. Text is drawn with the default sans serif font, so images only match a device's in their
+ * shapes; compare them to images from this target, not from a device.
+ * <p>
+ * Shadows are only drawn when asked for, for timing: like a shadow layer on a software canvas,
+ * each shape with a shadow is drawn into a mask that is blurred and composited below it, which is
+ * what makes them costly on a device.
+ * <p>
+ * Like the Canvas target, paints and paths are translated once and cached by the target, looked
+ * up by identity.
+ */
+class Java2dRenderTarget implements RenderTarget {
+    private final BufferedImage mImage;
+    private final Graphics2D mGraphics;
+    private final ArrayDeque<AffineTransform> mSaved = new ArrayDeque<>();
+    private final Rectangle2D.Float mRect = new Rectangle2D.Float();
+    private final Line2D.Float mLine = new Line2D.Float();
+    private final Ellipse2D.Float mEllipse = new Ellipse2D.Float();
+    private final Map<RenderPaint, NativePaint> mPaints = new WeakHashMap<>();
+    private final Map<FacePath, NativePath> mPaths = new WeakHashMap<>();
+    private final AffineTransform mImageTransform = new AffineTransform();
+    private final boolean mShadows;
+    /* The image shadows are drawn in and blurred back and forth with, as large as mImage. */
+    private BufferedImage mShadowMask;
+    private BufferedImage mShadowBlur;
+    private Graphics2D mShadowGraphics;
+
+    Java2dRenderTarget(BufferedImage image) {
+        this(image, false);
+    }
+
+    /**
+     * @param shadows whether to draw the shadows of paints that have one.
+     */
+    Java2dRenderTarget(BufferedImage image, boolean shadows) {
+        mImage = image;
+        mShadows = shadows;
+        mGraphics = image.createGraphics();
+        mGraphics.setRenderingHint(RenderingHints.KEY_STROKE_CONTROL,
+                RenderingHints.VALUE_STROKE_PURE);
+        /* Images are drawn like bitmaps with a FILTER_BITMAP_FLAG paint. */
+        mGraphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION,
+                RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+    }
+
+    BufferedImage getImage() {
+        return mImage;
+    }
+
+    /**
+     * Releases the graphics context. The target can't be drawn on afterwards.
+     */
+    void dispose() {
+        mGraphics.dispose();
+        if (mShadowGraphics != null) {
+            mShadowGraphics.dispose();
+        }
+    }
+
+    /**
+     * Draws {@code image} with its top left corner at {@code left, top}, like a cached layer is
+     * drawn with {@code Canvas.drawBitmap}.
+     */
+    void drawImage(BufferedImage image, float left, float top) {
+        mGraphics.drawImage(image, Math.round(left), Math.round(top), null);
+    }
+
+    /**
+     * Draws {@code image} with its point {@code pivotX, pivotY} at {@code x, y}, rotated
+     * {@code degrees} clockwise around it, like a hand sprite is drawn with a matrix.
+     */
+    void drawImage(BufferedImage image, float x, float y, float degrees, float pivotX,
+                   float pivotY) {
+        mImageTransform.setToRotation(Math.toRadians(degrees), x, y);
+        mImageTransform.translate(x - pivotX, y - pivotY);
+        mGraphics.drawImage(image, mImageTransform, null);
+    }
+
+    @Override
+    public void save() {
+        mSaved.push(mGraphics.getTransform());
+    }
+
+    @Override
+    public void restore() {
+        mGraphics.setTransform(mSaved.pop());
+    }
+
+    @Override
+    public void translate(float dx, float dy) {
+        mGraphics.translate(dx, dy);
+    }
+
+    @Override
+    public void rotate(float degrees, float pivotX, float pivotY) {
+        mGraphics.rotate(Math.toRadians(degrees), pivotX, pivotY);
+    }
+
+    @Override
+    public void drawColor(int color) {
+        /* Like Canvas.drawColor, replace everything regardless of the transform. */
+        final AffineTransform transform = mGraphics.getTransform();
+        mGraphics.setTransform(new AffineTransform());
+        mGraphics.setComposite(AlphaComposite.Src);
+        mGraphics.setColor(new Color(color, true));
+        mGraphics.fillRect(0, 0, mImage.getWidth(), mImage.getHeight());
+        mGraphics.setComposite(AlphaComposite.SrcOver);
+        mGraphics.setTransform(transform);
+    }
+
+    @Override
+    public void drawRect(float left, float top, float right, float bottom, RenderPaint paint) {
+        mRect.setRect(left, top, right - left, bottom - top);
+        drawShape(mRect, apply(paint));
+    }
+
+    @Override
+    public void drawLines(float[] points, RenderPaint paint) {
+        apply(paint);
+        for (int i = 0; i + 3 < points.length; i += 4) {
+            mLine.setLine(points[i], points[i + 1], points[i + 2], points[i + 3]);
+            mGraphics.draw(mLine);
+        }
+    }
+
+    @Override
+    public void drawCircle(float centerX, float centerY, float radius, RenderPaint paint) {
+        mEllipse.setFrame(centerX - radius, centerY - radius, 2 * radius, 2 * radius);
+        drawShape(mEllipse, apply(paint));
+    }
+
+    @Override
+    public void drawPath(FacePath path, RenderPaint paint) {
+        drawShape(toPath(path), apply(paint));
+    }
+
+    @Override
+    public void drawText(String text, float x, float y, RenderPaint paint) {
+        final NativePaint nativePaint = apply(paint);
+        final float width = mGraphics.getFontMetrics(nativePaint.font).stringWidth(text);
+        mGraphics.drawString(text, x - width / 2f, y);
+    }
+
+    @Override
+    public float getTextHeight(String text, RenderPaint paint) {
+        final NativePaint nativePaint = apply(paint);
+        return (float) nativePaint.font.createGlyphVector(mGraphics.getFontRenderContext(), text)
+                .getVisualBounds().getHeight();
+    }
+
+    private void drawShape(Shape shape, NativePaint paint) {
+        if (mShadows && paint.horizontalBlur != null) {
+            drawShadow(shape, paint);
+        }
+        if (paint.style != RenderPaint.Style.STROKE) {
+            mGraphics.fill(shape);
+        }
+        if (paint.style != RenderPaint.Style.FILL) {
+            mGraphics.draw(shape);
+        }
+    }
+
+    /**
+     * Draws the shadow of {@code shape}: the shape in the shadow colour, blurred in both
+     * directions around where it is drawn, below it.
+     */
+    private void drawShadow(Shape shape, NativePaint paint) {
+        final Rectangle region = mGraphics.getTransform().createTransformedShape(shape).getBounds();
+        final int extent = paint.horizontalBlur.getKernel().getXOrigin()
+                + (int) Math.ceil(paint.stroke.getLineWidth()) + 1;
+        region.grow(extent, extent);
+        Rectangle2D.intersect(region, new Rectangle(mImage.getWidth(), mImage.getHeight()),
+                region);
+        if (region.isEmpty()) {
+            return;
+        }
+        if (mShadowMask == null) {
+            mShadowMask = new BufferedImage(mImage.getWidth(), mImage.getHeight(),
+                    BufferedImage.TYPE_INT_ARGB_PRE);
+            mShadowBlur = new BufferedImage(mImage.getWidth(), mImage.getHeight(),
+                    BufferedImage.TYPE_INT_ARGB_PRE);
+            mShadowGraphics = mShadowMask.createGraphics();
+        }
+
+        final Graphics2D graphics = mShadowGraphics;
+        graphics.setTransform(new AffineTransform());
+        graphics.setComposite(AlphaComposite.Clear);
+        graphics.fill(region);
+        graphics.setComposite(AlphaComposite.SrcOver);
+        graphics.setTransform(mGraphics.getTransform());
+        graphics.setColor(paint.shadowColor);
+        graphics.setStroke(paint.stroke);
+        graphics.setRenderingHint(RenderingHints.KEY_ANTIALIASING, paint.antiAlias
+                ? RenderingHints.VALUE_ANTIALIAS_ON : RenderingHints.VALUE_ANTIALIAS_OFF);
+        if (paint.style != RenderPaint.Style.STROKE) {
+            graphics.fill(shape);
+        }
+        if (paint.style != RenderPaint.Style.FILL) {
+            graphics.draw(shape);
+        }
+
+        final BufferedImage mask =
+                mShadowMask.getSubimage(region.x, region.y, region.width, region.height);
+        final BufferedImage blur =
+                mShadowBlur.getSubimage(region.x, region.y, region.width, region.height);
+        paint.horizontalBlur.filter(mask, blur);
+        paint.verticalBlur.filter(blur, mask);
+        final AffineTransform transform = mGraphics.getTransform();
+        mGraphics.setTransform(new AffineTransform());
+        mGraphics.drawImage(mask, region.x, region.y, null);
+        mGraphics.setTransform(transform);
+    }
+
+    /**
+     * Sets up the graphics context to draw with {@code paint}.
+     */
+    private NativePaint apply(RenderPaint paint) {
+        NativePaint result = mPaints.get(paint);
+        if (result == null || result.generation != paint.generation) {
+            result = new NativePaint(paint);
+            mPaints.put(paint, result);
+        }
+        mGraphics.setColor(result.color);
+        mGraphics.setStroke(result.stroke);
+        mGraphics.setFont(result.font);
+        mGraphics.setRenderingHint(RenderingHints.KEY_ANTIALIASING, result.antiAlias
+                ? RenderingHints.VALUE_ANTIALIAS_ON : RenderingHints.VALUE_ANTIALIAS_OFF);
+        mGraphics.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, result.antiAlias
+                ? RenderingHints.VALUE_TEXT_ANTIALIAS_ON : RenderingHints.VALUE_TEXT_ANTIALIAS_OFF);
+        return result;
+    }
+
+    private Path2D.Float toPath(FacePath path) {
+        NativePath translated = mPaths.get(path);
+        if (translated != null && translated.generation == path.generation) {
+            return translated.path;
+        }
+        if (translated == null) {
+            translated = new NativePath();
+            mPaths.put(path, translated);
+        }
+        final Path2D.Float result = translated.path;
+        result.reset();
+        for (int polygon = 0; polygon < path.getPolygonCount(); polygon++) {
+            final int start = path.getPolygonStart(polygon);
+            final int end = start + path.getPolygonSize(polygon);
+            result.moveTo(path.getX(start), path.getY(start));
+            for (int point = start + 1; point < end; point++) {
+                result.lineTo(path.getX(point), path.getY(point));
+            }
+            result.closePath();
+        }
+        translated.generation = path.generation;
+        return result;
+    }
+
+    /* A RenderPaint translated to Java2D. */
+    private static final class NativePaint {
+        final int generation;
+        final Color color;
+        final BasicStroke stroke;
+        final Font font;
+        final boolean antiAlias;
+        final RenderPaint.Style style;
+        /* The shadow's colour and blur, or null without a shadow. */
+        final Color shadowColor;
+        final ConvolveOp horizontalBlur;
+        final ConvolveOp verticalBlur;
+
+        NativePaint(RenderPaint paint) {
+            generation = paint.generation;
+            color = new Color(paint.getColor(), true);
+            stroke = new BasicStroke(paint.getStrokeWidth(), BasicStroke.CAP_BUTT,
+                    BasicStroke.JOIN_MITER);
+            font = new Font(Font.SANS_SERIF, Font.PLAIN, 1).deriveFont(paint.getTextSize());
+            antiAlias = paint.isAntiAlias();
+            style = paint.getStyle();
+            if (paint.getShadowRadius() > 0) {
+                shadowColor = new Color(paint.getShadowColor(), true);
+                final float[] weights = gaussian(paint.getShadowRadius());
+                horizontalBlur = new ConvolveOp(new Kernel(weights.length, 1, weights));
+                verticalBlur = new ConvolveOp(new Kernel(1, weights.length, weights));
+            } else {
+                shadowColor = null;
+                horizontalBlur = null;
+                verticalBlur = null;
+            }
+        }
+
+        /**
+         * Returns the weights of a Gaussian blur for a shadow of {@code radius}, with the sigma
+         * Android derives from the radius, out to three sigmas.
+         */
+        private static float[] gaussian(float radius) {
+            final float sigma = 0.57735f * radius + 0.5f;
+            final int extent = (int) Math.ceil(3 * sigma);
+            final float[] weights = new float[2 * extent + 1];
+            float sum = 0;
+            for (int i = -extent; i <= extent; i++) {
+                weights[i + extent] = (float) Math.exp(-i * i / (2 * sigma * sigma));
+                sum += weights[i + extent];
+            }
+            for (int i = 0; i < weights.length; i++) {
+                weights[i] /= sum;
+            }
+            return weights;
+        }
+    }
+
+    /* A FacePath translated to Java2D, and the generation it was made from. */
+    private static final class NativePath {
+        final Path2D.Float path = new Path2D.Float();
+        int generation = -1;
+    }
+}
@@ -0,0 +1,147 @@
+package com.cybermats.cleaner;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.TimeZone;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Checks that drawing a frame doesn't allocate, by counting the bytes the thread allocates over
+ * many frames. The frames are drawn by {@link DesktopFace} on a target that only counts the draw
+ * calls: Java2D allocates in its own pipeline, but everything above the {@link RenderTarget}, the
+ * time math, the painters and the paints, is the code the app runs on every frame.
+ * <p>
+ * The JVM itself sometimes allocates on the thread, e.g. when the JIT replaces a method while it
+ * runs, so the frames are measured a few times and the least is taken. Allocations made by the
+ * frames show up in every round.
+ */
+public class FrameAllocationTest {
+    private static final int WARM_UP_FRAMES = 20000;
+    private static final int FRAMES = 10000;
+    private static final int ROUNDS = 3;
+    /* A sweeping frame, so that every field of the time changes. */
+    private static final long FRAME_MS = 33;
+    /* 2021-03-27T23:00:00Z, a day before Stockholm's spring transition. */
+    private static final long START_MS = 1616886000000L;
+
+    private com.sun.management.ThreadMXBean mThreads;
+    private DesktopFace mFace;
+    private CountingTarget mTarget;
+
+    @Before
+    public void setUp() {
+        assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+        mThreads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assumeTrue(mThreads.isThreadAllocatedMemorySupported());
+        mThreads.setThreadAllocatedMemoryEnabled(true);
+        mFace = new DesktopFace(320, TimeZone.getTimeZone("Europe/Stockholm"));
+        mTarget = new CountingTarget();
+    }
+
+    @Test
+    public void interactiveFramesDoNotAllocate() {
+        assertEquals(0, allocatedBytes(false));
+    }
+
+    @Test
+    public void ambientFramesDoNotAllocate() {
+        assertEquals(0, allocatedBytes(true));
+    }
+
+    /**
+     * Returns the least bytes allocated while drawing {@link #FRAMES} frames in a round, after
+     * warming up.
+     */
+    private long allocatedBytes(boolean ambient) {
+        long timeMs = START_MS;
+        for (int i = 0; i < WARM_UP_FRAMES; i++) {
+            timeMs += FRAME_MS;
+            mFace.render(mTarget, timeMs, ambient, (i % 101) / 100f);
+        }
+
+        final long threadId = Thread.currentThread().getId();
+        long least = Long.MAX_VALUE;
+        for (int round = 0; round < ROUNDS; round++) {
+            /* Reading the counter may allocate by itself, which is not the frames' doing. */
+            final long calibration = mThreads.getThreadAllocatedBytes(threadId);
+            final long overhead = mThreads.getThreadAllocatedBytes(threadId) - calibration;
+            final int callsBefore = mTarget.calls;
+            final long before = mThreads.getThreadAllocatedBytes(threadId);
+            for (int i = 0; i < FRAMES; i++) {
+                timeMs += FRAME_MS;
+                mFace.render(mTarget, timeMs, ambient, (i % 101) / 100f);
+            }
+            final long after = mThreads.getThreadAllocatedBytes(threadId);
+            assertTrue(mTarget.calls > callsBefore);
+            least = Math.min(least, after - before - overhead);
+        }
+        return least;
+    }
+
+    /* Counts the draw calls, so that the frames can't be optimized away, and draws nothing. */
+    private static final class CountingTarget implements RenderTarget {
+        int calls;
+
+        @Override
+        public void save() {
+            calls++;
+        }
+
+        @Override
+        public void restore() {
+            calls++;
+        }
+
+        @Override
+        public void translate(float dx, float dy) {
+            calls++;
+        }
+
+        @Override
+        public void rotate(float degrees, float pivotX, float pivotY) {
+            calls++;
+        }
+
+        @Override
+        public void drawColor(int color) {
+            calls++;
+        }
+
+        @Override
+        public void drawRect(float left, float top, float right, float bottom,
+                             RenderPaint paint) {
+            calls++;
+        }
+
+        @Override
+        public void drawLines(float[] points, RenderPaint paint) {
+            calls++;
+        }
+
+        @Override
+        public void drawCircle(float centerX, float centerY, float radius, RenderPaint paint) {
+            calls++;
+        }
+
+        @Override
+        public void drawPath(FacePath path, RenderPaint paint) {
+            calls++;
+        }
+
+        @Override
+        public void drawText(String text, float x, float y, RenderPaint paint) {
+            calls++;
+        }
+
+        @Override
+        public float getTextHeight(String text, RenderPaint paint) {
+            calls++;
+            return paint.getTextSize() * 0.7f;
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package com.cybermats.cleaner;
+
+import org.junit.Test;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.TimeZone;
+
+import javax.imageio.ImageIO;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.fail;
+
+/**
+ * Renders the face with {@link DesktopFace} and compares it with the reference images in
+ * {@code src/test/resources/golden}, so that a change to the drawing code shows up as a failure
+ * unless the references are updated with it, by running the tests with {@code -PupdateGolden}.
+ * <p>
+ * Text is drawn with whatever sans serif font the JVM has, and anti-aliasing differs slightly
+ * between Java2D pipelines, so pixels may differ a little per channel, and a few may differ more,
+ * e.g. around the date. Moving a hand or a tick by a pixel changes far more than that.
+ */
+public class GoldenImageTest {
+    /* 2021-06-15T10:08:37Z, with the hands apart and the second hand off the ticks. */
+    private static final long TIME_MS = 1623751717000L;
+    private static final float BATTERY_PERCENT = 0.8f;
+    /* How far a channel may be off before the pixel counts as different. */
+    private static final int CHANNEL_TOLERANCE = 24;
+    /* The share of the pixels that may differ. */
+    private static final double DIFFERENT_PIXEL_TOLERANCE = 0.005;
+
+    @Test
+    public void interactive() throws IOException {
+        check("interactive-320", 320, false);
+    }
+
+    @Test
+    public void ambient() throws IOException {
+        check("ambient-320", 320, true);
+    }
+
+    @Test
+    public void interactiveLarge() throws IOException {
+        check("interactive-454", 454, false);
+    }
+
+    private void check(String name, int size, boolean ambient) throws IOException {
+        final DesktopFace face = new DesktopFace(size, TimeZone.getTimeZone("UTC"));
+        final Java2dRenderTarget target = new Java2dRenderTarget(face.createImage());
+        face.render(target, TIME_MS, ambient, BATTERY_PERCENT);
+        target.dispose();
+        final BufferedImage actual = target.getImage();
+
+        final String update = System.getProperty("golden.update");
+        if (update != null) {
+            ImageIO.write(actual, "png", new File(update, name + ".png"));
+            return;
+        }
+
+        final BufferedImage expected = read(name);
+        assertEquals(name, expected.getWidth(), actual.getWidth());
+        assertEquals(name, expected.getHeight(), actual.getHeight());
+        final int different = countDifferentPixels(expected, actual);
+        final int allowed =
+                (int) (expected.getWidth() * expected.getHeight() * DIFFERENT_PIXEL_TOLERANCE);
+        if (different > allowed) {
+            final File output = File.createTempFile(name + "-", ".png");
+            ImageIO.write(actual, "png", output);
+            fail(name + ": " + different + " pixels differ, at most " + allowed
+                    + " may. Rendered " + output);
+        }
+    }
+
+    private BufferedImage read(String name) throws IOException {
+        final InputStream input = getClass().getResourceAsStream("/golden/" + name + ".png");
+        assertNotNull("No reference image " + name, input);
+        try {
+            return ImageIO.read(input);
+        } finally {
+            input.close();
+        }
+    }
+
+    private static int countDifferentPixels(BufferedImage expected, BufferedImage actual) {
+        int different = 0;
+        for (int y = 0; y < expected.getHeight(); y++) {
+            for (int x = 0; x < expected.getWidth(); x++) {
+                if (channelDistance(expected.getRGB(x, y), actual.getRGB(x, y))
+                        > CHANNEL_TOLERANCE) {
+                    different++;
+                }
+            }
+        }
+        return different;
+    }
+
+    private static int channelDistance(int expected, int actual) {
+        int distance = 0;
+        for (int shift = 0; shift < 32; shift += 8) {
+            distance = Math.max(distance,
+                    Math.abs((expected >>> shift & 0xff) - (actual >>> shift & 0xff)));
+        }
+        return distance;
+    }
+}